@@ -1,11 +1,20 @@
 package org.weblinkshield.api;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.weblinkshield.core.service.AnalysisService;
+import org.weblinkshield.core.service.VerdictResponse;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -14,17 +23,39 @@ import java.util.Map;
 public class AnalyzeController {
 
     private final AnalysisService service;
-    public AnalyzeController(AnalysisService service) { this.service = service; }
+    private final BulkAnalyzer bulk;
+    public AnalyzeController(AnalysisService service, BulkAnalyzer bulk) { this.service = service; this.bulk = bulk; }
 
     public record AnalyzeRequest(@NotBlank String url) {}
 
+    public record BatchRequest(@NotEmpty @Size(max = 1000) List<@NotBlank String> urls) {}
+
     @PostMapping("/analyze")
-    public Map<String, Object> analyze(@RequestBody AnalyzeRequest req) throws Exception {
+    public VerdictResponse analyze(@RequestBody AnalyzeRequest req) {
         return service.analyze(req.url());
     }
 
+    /** Analyze many links at once (e.g. every link extracted from one mail message). */
+    @PostMapping("/analyze/batch")
+    public List<VerdictResponse> analyzeBatch(@Valid @RequestBody BatchRequest req) {
+        return service.analyzeBatch(req.urls());
+    }
+
+    /**
+     * Analyze an upload of any size: NDJSON or plain text, one URL per line, answered with one
+     * NDJSON verdict per non-blank line, in order, as they complete (see {@link BulkAnalyzer}).
+     */
+    @PostMapping(value = "/analyze/stream",
+                 consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_PLAIN_VALUE},
+                 produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> analyzeStream(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(bulk.stream(request.getInputStream()));
+    }
+
     @GetMapping("/verdict")
-    public ResponseEntity<?> verdict(@RequestParam String url) throws Exception {
+    public ResponseEntity<?> verdict(@RequestParam String url) {
         return service.getVerdict(url)
                 .<ResponseEntity<?>>map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.status(404).body(Map.of("message","Not analyzed yet")));
@@ -1,15 +1,58 @@
 package org.weblinkshield.api;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.weblinkshield.core.limit.Bulkhead;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 @Configuration
 public class AsyncConfig {
+
+    /**
+     * Executor for the scan pipeline.
+     *  - platform: fixed pool of weblinkshield.scan.executor.pool-size threads (scans queue behind it)
+     *  - virtual:  one virtual thread per scan; concurrency is bounded by the bulkheads below
+     * Exported as executor.* meters (name=scan): queue wait (executor.idle), run time, and
+     * queue depth / active threads in platform mode.
+     */
+    @Bean
+    public ExecutorService scanExecutor(MeterRegistry registry,
+                                        @Value("${weblinkshield.scan.executor.mode:platform}") String mode,
+                                        @Value("${weblinkshield.scan.executor.pool-size:4}") int poolSize) {
+        ExecutorService exec = switch (mode) {
+            case "virtual" -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("scan-", 0).factory());
+            case "platform" -> Executors.newFixedThreadPool(poolSize); // tune as needed
+            default -> throw new IllegalArgumentException("Unknown weblinkshield.scan.executor.mode: " + mode);
+        };
+        return ExecutorServiceMetrics.monitor(registry, exec, "scan");
+    }
+
+    /** DNS/TLS probes block on the network; one virtual thread per probe keeps them cheap. */
+    @Bean
+    public ExecutorService intelExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Caps concurrent DB work (reads, write transactions, job store polling), so excess virtual
+     * threads queue here rather than on the Hikari pool; keep at or below its size.
+     * Never nest calls on one thread: a permit holder waiting for a second one can deadlock.
+     */
+    @Bean
+    public Bulkhead dbBulkhead(MeterRegistry registry,
+                               @Value("${weblinkshield.limits.db:10}") int limit) {
+        return new Bulkhead("db", limit, registry);
+    }
+
+    /** Caps concurrent outbound intel collections (each is one DNS lookup + one TLS probe). */
     @Bean
-    public ExecutorService scanExecutor() {
-        return Executors.newFixedThreadPool(4); // tune as needed
+    public Bulkhead networkBulkhead(MeterRegistry registry,
+                                    @Value("${weblinkshield.limits.network:64}") int limit) {
+        return new Bulkhead("network", limit, registry);
     }
 }
@@ -0,0 +1,184 @@
+package org.weblinkshield.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.weblinkshield.core.service.AnalysisService;
+import org.weblinkshield.core.service.VerdictResponse;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streaming bulk analysis (POST /api/analyze/stream): URLs in, one NDJSON verdict per URL out.
+ *
+ * Input lines are read incrementally and cut into chunks of chunk-size, and each chunk goes
+ * through {@link AnalysisService#analyzeBatch} (canonicalize, intel once per distinct host,
+ * rules, one batched write) on its own virtual thread. At most max-in-flight chunks are being
+ * analyzed at a time; the reader waits for the oldest one and writes its results before taking
+ * more input, so results come back in input order and memory stays at roughly
+ * (max-in-flight + 1) x chunk-size URLs whatever the upload size. A client that stops reading
+ * results stops the upload being read too.
+ *
+ * A line is a bare URL (plain text, e.g. an exported proxy log column), a JSON string, or a
+ * JSON object with a "url" field; blank lines are skipped. A chunk that fails as a whole (e.g.
+ * the database is down) answers each of its URLs with an error entry and the stream goes on.
+ *
+ * A stream may run for hours, so it gets its own timeout (weblinkshield.bulk.timeout) on its
+ * emitter instead of raising spring.mvc.async.request-timeout for every async endpoint.
+ */
+@Component
+public class BulkAnalyzer {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkAnalyzer.class);
+
+    private record Chunk(List<String> urls, Future<List<VerdictResponse>> results) {}
+
+    private final AnalysisService analysis;
+    private final ObjectMapper om = new ObjectMapper();
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final Duration timeout;
+    private final ExecutorService streams = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("bulk-stream-", 0).factory());
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final Counter urls;
+    private final Counter failedChunks;
+
+    public BulkAnalyzer(AnalysisService analysis,
+                        MeterRegistry registry,
+                        @Value("${weblinkshield.bulk.chunk-size:500}") int chunkSize,
+                        @Value("${weblinkshield.bulk.max-in-flight:4}") int maxInFlight,
+                        @Value("${weblinkshield.bulk.timeout:12h}") Duration timeout) {
+        this.analysis = analysis;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+        this.timeout = timeout;
+        Gauge.builder("weblinkshield.bulk.streams", activeStreams, AtomicInteger::get)
+                .description("Bulk analysis streams in progress")
+                .register(registry);
+        this.urls = Counter.builder("weblinkshield.bulk.urls")
+                .description("URLs answered on bulk analysis streams")
+                .register(registry);
+        this.failedChunks = Counter.builder("weblinkshield.bulk.failed.chunks")
+                .description("Bulk chunks answered with errors because analyzeBatch failed")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        streams.shutdownNow();
+    }
+
+    /** Start analyzing an upload; results go out through the returned emitter. */
+    public ResponseBodyEmitter stream(InputStream body) {
+        var emitter = new ResponseBodyEmitter(timeout.toMillis());
+        streams.execute(() -> {
+            try {
+                run(body, sink(emitter));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e); // client gone, or timed out
+            }
+        });
+        return emitter;
+    }
+
+    /** Bytes written to it leave through the emitter, one send per flush of the buffer in front of it. */
+    private static OutputStream sink(ResponseBodyEmitter emitter) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                emitter.send(Arrays.copyOfRange(b, off, off + len), MediaType.APPLICATION_NDJSON);
+            }
+        };
+    }
+
+    public void run(InputStream body, OutputStream out) throws IOException {
+        activeStreams.incrementAndGet();
+        BufferedReader in = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 1 << 16);
+        try (JsonGenerator json = om.getFactory().createGenerator(new BufferedOutputStream(out, 1 << 16))
+                     .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                     .setRootValueSeparator(null); // lines end in '\n' instead
+             ExecutorService workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bulk-", 0).factory())) {
+            ArrayDeque<Chunk> inFlight = new ArrayDeque<>(maxInFlight);
+            List<String> chunk = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                chunk.add(url(line));
+                if (chunk.size() < chunkSize) continue;
+                if (inFlight.size() == maxInFlight) write(inFlight.poll(), json);
+                inFlight.add(submit(chunk, workers));
+                chunk = new ArrayList<>(chunkSize);
+            }
+            if (!chunk.isEmpty()) inFlight.add(submit(chunk, workers));
+            while (!inFlight.isEmpty()) write(inFlight.poll(), json);
+        } finally {
+            activeStreams.decrementAndGet();
+        }
+    }
+
+    private Chunk submit(List<String> urls, ExecutorService workers) {
+        return new Chunk(urls, workers.submit(() -> analysis.analyzeBatch(urls)));
+    }
+
+    /** Wait for a chunk and write its results, flushed so the client sees them right away. */
+    private void write(Chunk chunk, JsonGenerator json) throws IOException {
+        List<VerdictResponse> results;
+        try {
+            results = chunk.results().get();
+        } catch (ExecutionException e) {
+            log.warn("bulk chunk of {} URLs failed: {}", chunk.urls().size(), e.getCause().toString());
+            failedChunks.increment();
+            results = chunk.urls().stream().map(u -> VerdictResponse.error(u, "Analysis failed")).toList();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("bulk analysis interrupted");
+        }
+        for (VerdictResponse r : results) {
+            json.writeObject(r);
+            json.writeRaw('\n');
+        }
+        json.flush();
+        urls.increment(results.size());
+    }
+
+    /** URL of one input line; lines that are not valid JSON are taken as the URL itself. */
+    private String url(String line) {
+        String s = line.strip();
+        char first = s.charAt(0);
+        if (first != '"' && first != '{') return s;
+        try {
+            JsonNode node = om.readTree(s);
+            return node.isTextual() ? node.asText() : node.path("url").asText("");
+        } catch (IOException e) {
+            return s;
+        }
+    }
+}
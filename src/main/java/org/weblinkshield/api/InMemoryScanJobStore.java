@@ -0,0 +1,202 @@
+package org.weblinkshield.api;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory job store (single node), bounded so a long-running node does not grow without limit:
+ *  - finished (DONE/ERROR) jobs are evicted after weblinkshield.scan.jobs.retention, checked
+ *    on read and by a sweep every second, so an idle node frees them too
+ *  - total entries and approximate payload bytes are capped; past either cap the least
+ *    recently used finished job is evicted, taken from its own access-ordered index. Running
+ *    jobs are evicted (least recently used first) only when no finished job is left
+ * Subscribers of an evicted or expired job are told it was removed (ScanEventHub then ends its
+ * streams), after the store lock is released.
+ *
+ * Gauges weblinkshield.scan.jobs.{size,bytes} and counter
+ * weblinkshield.scan.jobs.evicted{cause=expired|size|running} show the store's footprint;
+ * cause=running counts scans dropped while still in progress (raise the caps if it moves).
+ */
+@Component
+@ConditionalOnProperty(name = "weblinkshield.scan.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryScanJobStore implements ScanJobStore {
+
+    /** Fixed per-job overhead estimate (object headers, id, timestamps, map entry). */
+    private static final long JOB_OVERHEAD_BYTES = 256;
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    private final Duration retention;
+    private final int maxEntries;
+    private final long maxBytes;
+
+    // access-ordered: iteration starts at the least recently used job
+    private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<String, Job> finished = new LinkedHashMap<>(256, 0.75f, true); // subset of jobs
+    private long totalBytes;
+    private final ScheduledExecutorService sweeper =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("scan-job-sweeper").factory());
+
+    private final Map<String, List<Listener>> listeners = new ConcurrentHashMap<>();
+    private final List<Runnable> removals = new ArrayList<>(); // guarded by this; run by notifyRemoved
+
+    private final Counter expired;
+    private final Counter evictedForSize;
+    private final Counter evictedRunning;
+
+    public InMemoryScanJobStore(MeterRegistry registry,
+                                @Value("${weblinkshield.scan.jobs.retention:30m}") Duration retention,
+                                @Value("${weblinkshield.scan.jobs.max-entries:10000}") int maxEntries,
+                                @Value("${weblinkshield.scan.jobs.max-bytes:64MB}") DataSize maxBytes) {
+        this.retention = retention;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes.toBytes();
+        Gauge.builder("weblinkshield.scan.jobs.size", this, s -> s.size()).register(registry);
+        Gauge.builder("weblinkshield.scan.jobs.bytes", this, s -> s.bytes())
+                .baseUnit("bytes").register(registry);
+        this.expired = Counter.builder("weblinkshield.scan.jobs.evicted").tag("cause", "expired").register(registry);
+        this.evictedForSize = Counter.builder("weblinkshield.scan.jobs.evicted").tag("cause", "size").register(registry);
+        this.evictedRunning = Counter.builder("weblinkshield.scan.jobs.evicted").tag("cause", "running").register(registry);
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() { sweeper.shutdownNow(); }
+
+    @Override
+    public Job create(String url) {
+        String id = UUID.randomUUID().toString();
+        Job j = new Job(id, url);
+        synchronized (this) {
+            j.bytes = weigh(j);
+            jobs.put(id, j);
+            totalBytes += j.bytes;
+            enforceCaps();
+        }
+        notifyRemoved();
+        return j;
+    }
+
+    @Override
+    public Job get(String id) {
+        Job j;
+        synchronized (this) {
+            j = jobs.get(id);
+            if (j != null && j.isFinished()) finished.get(id); // touch its place in the finished index too
+            if (j != null && isExpired(j, Instant.now())) {
+                remove(j);
+                expired.increment();
+                j = null;
+            }
+        }
+        notifyRemoved();
+        return j;
+    }
+
+    /** Re-account a job after its status or payload changed, then notify subscribers. */
+    @Override
+    public void update(Job j) {
+        synchronized (this) {
+            j.version++;
+            if (j.isFinished() && j.finished == null) j.finished = Instant.now();
+            if (jobs.get(j.id) == j) {
+                long w = weigh(j);
+                totalBytes += w - j.bytes;
+                j.bytes = w;
+                if (j.isFinished()) finished.put(j.id, j);
+                enforceCaps();
+            }
+        }
+        notifyRemoved();
+        List<Listener> subs = listeners.get(j.id);
+        if (subs != null) subs.forEach(l -> l.changed(j));
+    }
+
+    @Override
+    public Subscription subscribe(String jobId, Listener listener) {
+        listeners.computeIfAbsent(jobId, k -> new CopyOnWriteArrayList<>()).add(listener);
+        return () -> listeners.computeIfPresent(jobId, (k, subs) -> {
+            subs.remove(listener);
+            return subs.isEmpty() ? null : subs;
+        });
+    }
+
+    public synchronized int size() { return jobs.size(); }
+
+    public synchronized long bytes() { return totalBytes; }
+
+    /** Tell subscribers of removed jobs, outside the lock (listeners may take their own). */
+    private void notifyRemoved() {
+        List<Runnable> due;
+        synchronized (this) {
+            if (removals.isEmpty()) return;
+            due = new ArrayList<>(removals);
+            removals.clear();
+        }
+        due.forEach(Runnable::run);
+    }
+
+    /** Drop expired jobs; only finished ones can expire, so only their index is scanned. */
+    private void sweep() {
+        synchronized (this) {
+            Instant now = Instant.now();
+            for (Iterator<Job> it = finished.values().iterator(); it.hasNext(); ) {
+                Job j = it.next();
+                if (isExpired(j, now)) {
+                    it.remove();
+                    jobs.remove(j.id);
+                    totalBytes -= j.bytes;
+                    dropListeners(j);
+                    expired.increment();
+                }
+            }
+        }
+        notifyRemoved();
+    }
+
+    // ---- internal helpers (caller holds the lock) ----
+
+    private void enforceCaps() {
+        while (jobs.size() > maxEntries || (totalBytes > maxBytes && jobs.size() > 1)) {
+            boolean running = finished.isEmpty(); // last resort: the scan goes on, but unreachable
+            remove((running ? jobs : finished).values().iterator().next());
+            (running ? evictedRunning : evictedForSize).increment();
+        }
+    }
+
+    private void remove(Job j) {
+        jobs.remove(j.id);
+        finished.remove(j.id);
+        totalBytes -= j.bytes;
+        dropListeners(j);
+    }
+
+    private void dropListeners(Job j) {
+        List<Listener> subs = listeners.remove(j.id);
+        if (subs != null) removals.add(() -> subs.forEach(l -> l.removed(j)));
+    }
+
+    private boolean isExpired(Job j, Instant now) {
+        Instant f = j.finished;
+        return f != null && f.plus(retention).isBefore(now);
+    }
+
+    private static long weigh(Job j) {
+        // Latin-1 compact strings: ~1 byte per char
+        return JOB_OVERHEAD_BYTES + j.id.length() + j.url.length() + j.payloadJson.length();
+    }
+}
@@ -0,0 +1,203 @@
+package org.weblinkshield.api;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.weblinkshield.core.limit.Bulkhead;
+import org.weblinkshield.data.entity.ScanJob;
+import org.weblinkshield.data.repo.ScanJobRepo;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Shared, durable job store backed by the scan_job table, so jobs survive restarts and
+ * any node can serve GET /scan/{id} and SSE streams without sticky sessions.
+ *
+ * Updates are single UPDATE statements (status-only when the payload did not change).
+ * Changes made on this node notify local subscribers immediately; changes made on other
+ * nodes are picked up by polling the versions of subscribed jobs every poll-interval, and a
+ * subscribed job that has been purged is reported as removed.
+ *
+ * The node running a job heartbeats its updated time every stale-after / 3. A job nobody has
+ * written or heartbeated for stale-after (its node crashed mid-pipeline) is failed by the
+ * purge sweep of any node, and later writes to it are ignored. Finished jobs are deleted
+ * after retention, as are unfinished ones idle that long.
+ *
+ * Every query, the poller's included, holds a db bulkhead permit.
+ */
+@Component
+@ConditionalOnProperty(name = "weblinkshield.scan.store", havingValue = "jdbc")
+public class JdbcScanJobStore implements ScanJobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcScanJobStore.class);
+
+    static final String ABANDONED = "{\"error\":\"Scan abandoned: the node running it stopped\"}";
+
+    private final ScanJobRepo repo;
+    private final Bulkhead db;
+    private final Duration retention;
+    private final Duration staleAfter;
+
+    private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+    private final Set<String> running = ConcurrentHashMap.newKeySet(); // unfinished jobs written by this node
+    private final ScheduledExecutorService poller =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("scan-job-poller").factory());
+
+    /** Subscribers of one job plus the last version they have been told about. */
+    private static final class Watch {
+        final List<Listener> listeners = new CopyOnWriteArrayList<>();
+        volatile long seenVersion;
+        volatile Job last; // handed to removed()
+    }
+
+    public JdbcScanJobStore(ScanJobRepo repo,
+                            @Qualifier("dbBulkhead") Bulkhead db,
+                            @Value("${weblinkshield.scan.jobs.retention:30m}") Duration retention,
+                            @Value("${weblinkshield.scan.jobs.stale-after:5m}") Duration staleAfter,
+                            @Value("${weblinkshield.scan.store-poll-interval:500ms}") Duration pollInterval) {
+        this.repo = repo;
+        this.db = db;
+        this.retention = retention;
+        this.staleAfter = staleAfter;
+        long every = pollInterval.toMillis();
+        long beat = Math.max(1, staleAfter.toMillis() / 3);
+        poller.scheduleWithFixedDelay(this::pollSafely, every, every, TimeUnit.MILLISECONDS);
+        poller.scheduleWithFixedDelay(this::heartbeatSafely, beat, beat, TimeUnit.MILLISECONDS);
+        poller.scheduleWithFixedDelay(this::purgeSafely, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    void shutdown() { poller.shutdownNow(); }
+
+    @Override
+    public Job create(String url) {
+        Job j = new Job(UUID.randomUUID().toString(), url);
+        ScanJob row = new ScanJob();
+        row.setId(j.id);
+        row.setUrl(url);
+        row.setStatus(j.status.name());
+        row.setPayloadJson(j.payloadJson);
+        row.setVersion(j.version);
+        row.setCreated(j.created);
+        row.setUpdated(j.created);
+        db.run(() -> repo.save(row));
+        j.storedPayload = j.payloadJson;
+        running.add(j.id);
+        return j;
+    }
+
+    @Override
+    public Job get(String id) {
+        return db.call(() -> repo.findById(id).map(JdbcScanJobStore::toJob).orElse(null));
+    }
+
+    @Override
+    public void update(Job j) {
+        long version = ++j.version;
+        if (j.isFinished() && j.finished == null) j.finished = Instant.now();
+        String payload = j.payloadJson;
+        Instant now = Instant.now();
+        int written = db.call(() -> (payload == j.storedPayload)
+                ? repo.updateStatus(j.id, j.status.name(), version, j.finished, now)
+                : repo.updateStatusAndPayload(j.id, j.status.name(), payload, version, j.finished, now));
+        if (written == 0) { // failed as stale (or purged) meanwhile; the stored outcome stands
+            running.remove(j.id);
+            log.warn("scan job {} was already finished or purged; dropping its {} update", j.id, j.status);
+            return;
+        }
+        j.storedPayload = payload;
+        if (j.isFinished()) running.remove(j.id); else running.add(j.id);
+        Watch w = watches.get(j.id);
+        if (w != null) notify(w, j);
+    }
+
+    @Override
+    public Subscription subscribe(String jobId, Listener listener) {
+        Watch w = watches.computeIfAbsent(jobId, k -> new Watch());
+        w.listeners.add(listener);
+        return () -> watches.computeIfPresent(jobId, (k, cur) -> {
+            cur.listeners.remove(listener);
+            return cur.listeners.isEmpty() ? null : cur;
+        });
+    }
+
+    // ---- change polling ----
+
+    private void pollSafely() {
+        try {
+            if (watches.isEmpty()) return;
+            Set<String> gone = new HashSet<>(watches.keySet());
+            for (ScanJobRepo.VersionView v : db.call(() -> repo.findByIdIn(gone))) {
+                gone.remove(v.getId());
+                Watch w = watches.get(v.getId());
+                if (w == null || v.getVersion() <= w.seenVersion) continue;
+                // only changed jobs pay for loading the payload
+                Job j = get(v.getId());
+                if (j != null) notify(w, j);
+            }
+            for (String id : gone) { // purged (by any node)
+                Watch w = watches.remove(id);
+                if (w == null) continue;
+                Job last = (w.last != null) ? w.last : new Job(id, null);
+                w.listeners.forEach(l -> l.removed(last));
+            }
+        } catch (Exception e) {
+            log.warn("scan job poll failed: {}", e.toString());
+        }
+    }
+
+    private void heartbeatSafely() {
+        try {
+            if (!running.isEmpty()) db.call(() -> repo.touch(List.copyOf(running), Instant.now()));
+        } catch (Exception e) {
+            log.warn("scan job heartbeat failed: {}", e.toString());
+        }
+    }
+
+    private void purgeSafely() {
+        try {
+            purge();
+        } catch (Exception e) {
+            log.warn("scan job purge failed: {}", e.toString());
+        }
+    }
+
+    /** Fail jobs whose node stopped heartbeating them, then delete expired ones. */
+    void purge() {
+        Instant now = Instant.now();
+        int failed = db.call(() -> repo.failStale(now.minus(staleAfter), ABANDONED, now));
+        if (failed > 0) log.warn("failed {} scan jobs not updated for {}", failed, staleAfter);
+        db.call(() -> repo.deleteFinishedBefore(now.minus(retention)));
+        db.call(() -> repo.deleteUnfinishedIdleBefore(now.minus(retention)));
+    }
+
+    private static void notify(Watch w, Job j) {
+        synchronized (w) {
+            if (j.version <= w.seenVersion) return;
+            w.seenVersion = j.version;
+            w.last = j;
+        }
+        w.listeners.forEach(l -> l.changed(j));
+    }
+
+    private static Job toJob(ScanJob row) {
+        Job j = new Job(row.getId(), row.getUrl(), row.getCreated());
+        j.status = Job.Status.valueOf(row.getStatus());
+        j.payloadJson = row.getPayloadJson() == null ? "{}" : row.getPayloadJson();
+        j.storedPayload = j.payloadJson;
+        j.version = row.getVersion();
+        j.finished = row.getFinished();
+        return j;
+    }
+}
@@ -1,8 +1,13 @@
 package org.weblinkshield.api;
 
+import com.fasterxml.jackson.annotation.JsonRawValue;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -10,8 +15,11 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.weblinkshield.core.service.AnalysisService;
 
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @RestController
 @RequestMapping("/api/v1")
@@ -19,83 +27,115 @@ import java.util.concurrent.ExecutorService;
 public class ScanController {
 
     private final ScanJobStore store;
+    private final ScanEventHub hub;
     private final AnalysisService analysis;
     private final ExecutorService executor;
     private final ObjectMapper om = new ObjectMapper();
+    private final AtomicInteger activeScans = new AtomicInteger();
+    private final Timer queueWait;
+    private final Timer stageCore, stageStatic, stageSandbox;
+    private final Map<ScanJobStore.Job.Status, Timer> durationByStatus = new EnumMap<>(ScanJobStore.Job.Status.class);
+
+    public ScanController(ScanJobStore store, ScanEventHub hub, AnalysisService analysis,
+                          @Qualifier("scanExecutor") ExecutorService executor,
+                          MeterRegistry registry) {
+        this.store = store; this.hub = hub; this.analysis = analysis; this.executor = executor;
+        Gauge.builder("weblinkshield.scan.active", activeScans, AtomicInteger::get)
+                .description("Scan pipelines currently running")
+                .register(registry);
+        this.queueWait = Timer.builder("weblinkshield.scan.queue.wait")
+                .description("Submit to pipeline start (time queued behind the scan executor)")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.stageCore = stageTimer(registry, "core");
+        this.stageStatic = stageTimer(registry, "static");
+        this.stageSandbox = stageTimer(registry, "sandbox");
+        for (ScanJobStore.Job.Status status : ScanJobStore.Job.Status.values()) {
+            durationByStatus.put(status, Timer.builder("weblinkshield.scan.duration")
+                    .description("Scan submit to final status, including queue wait")
+                    .tag("status", status.name())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
 
-    public ScanController(ScanJobStore store, AnalysisService analysis, ExecutorService executor) {
-        this.store = store; this.analysis = analysis; this.executor = executor;
+    private static Timer stageTimer(MeterRegistry registry, String stage) {
+        return Timer.builder("weblinkshield.scan.stage")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry);
     }
 
     public record ScanRequest(@NotBlank String url) {}
 
+    /** Job snapshot; data is the stored payload JSON, written out as is. */
+    public record ScanSnapshot(String jobId, ScanJobStore.Job.Status status, String url, @JsonRawValue String data) {}
+
     @PostMapping("/scan")
     public Map<String,String> submit(@Valid @RequestBody ScanRequest req) {
         var job = store.create(req.url());
+        hub.track(job); // record stage events for Last-Event-ID replay from the start
         // Start async work
-        executor.submit(() -> runPipeline(job.id));
+        long submitted = System.nanoTime();
+        executor.submit(() -> runPipeline(job.id, submitted));
         return Map.of("jobId", job.id);
     }
 
     @GetMapping("/scan/{jobId}")
-    public ResponseEntity<?> snapshot(@PathVariable String jobId) {
+    public ResponseEntity<ScanSnapshot> snapshot(@PathVariable String jobId) {
         var job = store.get(jobId);
         if (job == null) return ResponseEntity.notFound().build();
-        return ResponseEntity.ok(Map.of(
-                "jobId", job.id,
-                "status", job.status,
-                "url", job.url,
-                "data", safeRead(job.payloadJson)
-        ));
+        return ResponseEntity.ok(new ScanSnapshot(job.id, job.status, job.url, job.payloadJson));
     }
 
     @GetMapping(value="/scan/{jobId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public ResponseEntity<SseEmitter> stream(@PathVariable String jobId) {
+    public ResponseEntity<SseEmitter> stream(@PathVariable String jobId,
+                                             @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
         var job = store.get(jobId);
         if (job == null) return ResponseEntity.notFound().build();
-        var emitter = new SseEmitter(0L); // no timeout
-        job.emitter = emitter;
-        // send initial snapshot
-        try {
-            emitter.send(SseEmitter.event().name("snapshot").data(Map.of(
-                    "status", job.status, "url", job.url, "data", safeRead(job.payloadJson)
-            )));
-        } catch (Exception ignored) {}
-        emitter.onCompletion(() -> job.emitter = null);
-        emitter.onTimeout(() -> job.emitter = null);
-        return ResponseEntity.ok(emitter);
+        return ResponseEntity.ok(hub.subscribe(job, parseEventId(lastEventId)));
     }
 
     // ---- internal helpers ----
 
-    private Object safeRead(String json) {
-        try { return om.readTree(json); } catch (Exception e) { return Map.of(); }
+    private static Long parseEventId(String header) {
+        if (header == null || header.isBlank()) return null;
+        try { return Long.parseLong(header.trim()); } catch (NumberFormatException e) { return null; }
     }
 
-    // Simulated 3-stage pipeline calling your existing AnalysisService
-    private void runPipeline(String jobId) {
+    // Simulated 3-stage pipeline calling your existing AnalysisService.
+    // Timed as weblinkshield.scan.queue.wait, weblinkshield.scan.stage{stage=core|static|sandbox}
+    // and weblinkshield.scan.duration{status=DONE|ERROR} (submit to finish).
+    private void runPipeline(String jobId, long submitted) {
+        long started = System.nanoTime();
+        queueWait.record(started - submitted, TimeUnit.NANOSECONDS);
         var job = store.get(jobId);
         if (job == null) return;
 
+        activeScans.incrementAndGet();
         try {
             // Stage 1: core (your current fast rules)
+            long stage = System.nanoTime();
             job.status = ScanJobStore.Job.Status.CORE_RUNNING;
             push(job);
 
-            var core = analysis.analyze(job.url); // returns map with verdict/score/reasons/url
+            var core = analysis.analyze(job.url); // verdict/score/reasons/url
             job.payloadJson = om.writeValueAsString(core);
             push(job);
+            stage = recordStage(stageCore, stage);
 
             // Stage 2: static (placeholder now; will implement in Step 2)
             job.status = ScanJobStore.Job.Status.STATIC_RUNNING;
             push(job);
             // ... run static analyzers here later ...
             // job.payloadJson = om.writeValueAsString(updatedSnapshot); push(job);
+            stage = recordStage(stageStatic, stage);
 
             // Stage 3: sandbox (placeholder for Step 3)
             job.status = ScanJobStore.Job.Status.SANDBOX_RUNNING;
             push(job);
             // ... enqueue sandbox and maybe wait or finish immediately ...
+            recordStage(stageSandbox, stage);
 
             job.status = ScanJobStore.Job.Status.DONE;
             push(job);
@@ -104,26 +144,20 @@ public class ScanController {
             try { job.payloadJson = om.writeValueAsString(Map.of("error", e.getMessage())); } catch (Exception ignored) {}
             push(job);
         } finally {
-            // keep emitter open for client to reconnect; optional: complete it
-            if (job.emitter != null) {
-                try { job.emitter.complete(); } catch (Exception ignored) {}
-                job.emitter = null;
-            }
+            activeScans.decrementAndGet();
+            durationByStatus.get(job.status).record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
         }
     }
 
+    /** Record one pipeline stage that began at {@code start}; returns the time it ended. */
+    private static long recordStage(Timer stage, long start) {
+        long now = System.nanoTime();
+        stage.record(now - start, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    /** Record a state change; the store/event hub fan it out to stream subscribers (on any node). */
     private void push(ScanJobStore.Job job) {
-        if (job.emitter == null) return;
-        try {
-            job.emitter.send(
-                    SseEmitter.event()
-                            .name("snapshot")
-                            .data(Map.of("status", job.status, "url", job.url, "data", safeRead(job.payloadJson)))
-            );
-        } catch (Exception ignored) {
-            // client disconnected; drop emitter
-            try { job.emitter.complete(); } catch (Exception ignore) {}
-            job.emitter = null;
-        }
+        store.update(job);
     }
 }
@@ -0,0 +1,309 @@
+package org.weblinkshield.api;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SSE fan-out for scan jobs.
+ *
+ * Each job has one topic, subscribed to the job store once (from submit on the node running
+ * the pipeline, or from the first stream elsewhere). A state change is serialized once and
+ * offered to every subscriber's bounded buffer; delivery happens on virtual threads, never
+ * on the scan worker. A subscriber whose buffer is full (slow or stalled client) is dropped
+ * rather than allowed to hold anything up.
+ *
+ * Events carry the job version as SSE id. Every topic keeps a small log of recent events, so
+ * a client reconnecting with Last-Event-ID gets exactly the events it missed (or the current
+ * snapshot if the log no longer reaches back that far). Idle streams get a heartbeat comment
+ * to keep proxies from closing them. Topics are dropped replay-retention after the job
+ * finishes, or after that long without events or subscribers; a job evicted from the store
+ * ends its streams right away.
+ */
+@Component
+public class ScanEventHub {
+
+    /** Wire shape of a "snapshot" event; data is the job payload, embedded without re-parsing. */
+    record Snapshot(ScanJobStore.Job.Status status, String url, @JsonRawValue String data) {}
+
+    /** One serialized event; {@code last} ends the stream after delivery. id < 0 marks a heartbeat. */
+    record Event(long id, String json, boolean last) {
+        static final Event HEARTBEAT = new Event(-1, null, false);
+        boolean isHeartbeat() { return id < 0; }
+    }
+
+    private final ScanJobStore store;
+    private final ObjectMapper om = new ObjectMapper();
+    private final ExecutorService delivery = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("sse-", 0).factory());
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("sse-heartbeat").factory());
+    private final int bufferSize;
+    private final int replaySize;
+    private final long replayRetentionNanos;
+
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Counter dropped;
+    private final Counter replayed;
+
+    public ScanEventHub(ScanJobStore store,
+                        MeterRegistry registry,
+                        @Value("${weblinkshield.sse.buffer-size:16}") int bufferSize,
+                        @Value("${weblinkshield.sse.replay-size:32}") int replaySize,
+                        @Value("${weblinkshield.sse.replay-retention:2m}") Duration replayRetention,
+                        @Value("${weblinkshield.sse.heartbeat:15s}") Duration heartbeat) {
+        this.store = store;
+        this.bufferSize = bufferSize;
+        this.replaySize = replaySize;
+        this.replayRetentionNanos = replayRetention.toNanos();
+        Gauge.builder("weblinkshield.sse.subscribers", subscriberCount, AtomicInteger::get).register(registry);
+        Gauge.builder("weblinkshield.sse.topics", topics, Map::size).register(registry);
+        this.dropped = Counter.builder("weblinkshield.sse.dropped")
+                .description("Subscribers disconnected because their buffer overflowed")
+                .register(registry);
+        this.replayed = Counter.builder("weblinkshield.sse.replayed")
+                .description("Events re-sent to clients reconnecting with Last-Event-ID")
+                .register(registry);
+        long every = heartbeat.toMillis();
+        ticker.scheduleWithFixedDelay(this::tick, every, every, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+        delivery.shutdownNow();
+    }
+
+    /** Start recording a job's events as soon as it is submitted, before anyone streams it. */
+    public void track(ScanJobStore.Job job) {
+        topics.computeIfAbsent(job.id, this::open);
+    }
+
+    /**
+     * Open a stream for a job. Without lastEventId: the current snapshot, then every change
+     * until the job finishes. With lastEventId: only the events after it.
+     */
+    public SseEmitter subscribe(ScanJobStore.Job job, Long lastEventId) {
+        var emitter = newEmitter();
+        var sub = new Subscriber(emitter);
+        subscriberCount.incrementAndGet();
+
+        Topic topic;
+        synchronized (this) {
+            topic = job.isFinished() ? topics.get(job.id) : topics.computeIfAbsent(job.id, this::open);
+            if (topic != null) topic.subscribers.add(sub);
+        }
+        if (topic == null) {
+            // finished and no longer tracked: the final snapshot is all there is
+            if (lastEventId == null || lastEventId < job.version) sub.offer(snapshot(job));
+            else sub.complete();
+            return emitter;
+        }
+        emitter.onCompletion(() -> leave(topic, sub));
+        emitter.onTimeout(() -> leave(topic, sub));
+        emitter.onError(e -> leave(topic, sub));
+
+        List<Event> missed = (lastEventId == null) ? null : topic.since(lastEventId);
+        if (missed != null) {
+            replayed.increment(missed.size());
+            missed.forEach(sub::offer);
+            // already saw the final event: nothing will follow, so end the stream now
+            if (missed.isEmpty() && topic.ended()) sub.complete();
+        } else {
+            // first connect, or the log no longer reaches back: send the current snapshot;
+            // re-read after subscribing so a change in between is not lost
+            var current = store.get(job.id);
+            sub.offer(snapshot(current != null ? current : job));
+        }
+        return emitter;
+    }
+
+    /** Emitter of one stream; overridden by tests to capture what is sent. */
+    SseEmitter newEmitter() {
+        return new SseEmitter(0L); // no timeout
+    }
+
+    // ---- topics ----
+
+    private final class Topic {
+        final String jobId;
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final ArrayDeque<Event> log = new ArrayDeque<>();
+        ScanJobStore.Subscription storeSub;
+        volatile long lastActivity = System.nanoTime();
+        volatile boolean finished;
+
+        Topic(String jobId) { this.jobId = jobId; }
+
+        /** @return false if the event is not newer than what is already logged */
+        synchronized boolean append(Event e) {
+            Event newest = log.peekLast();
+            if (newest != null && newest.id() >= e.id()) return false;
+            log.addLast(e);
+            while (log.size() > replaySize) log.pollFirst();
+            lastActivity = System.nanoTime();
+            return true;
+        }
+
+        /** Events after lastId, or null if the log has a gap there (caller sends a snapshot). */
+        synchronized List<Event> since(long lastId) {
+            Event oldest = log.peekFirst();
+            if (oldest == null || oldest.id() > lastId + 1) return null;
+            List<Event> out = new ArrayList<>();
+            for (Event e : log) if (e.id() > lastId) out.add(e);
+            return out;
+        }
+
+        /** True once the job's final event is logged. */
+        synchronized boolean ended() {
+            Event newest = log.peekLast();
+            return newest != null && newest.last();
+        }
+    }
+
+    private Topic open(String jobId) {
+        Topic t = new Topic(jobId);
+        t.storeSub = store.subscribe(jobId, new ScanJobStore.Listener() {
+            @Override public void changed(ScanJobStore.Job job) { publish(t, job); }
+            // evicted, possibly still running: no final event will come, so end the streams now
+            @Override public void removed(ScanJobStore.Job job) { close(t); }
+        });
+        return t;
+    }
+
+    /** Store listener: runs on the thread that changed the job, so it only serializes and enqueues. */
+    private void publish(Topic t, ScanJobStore.Job job) {
+        Event e = snapshot(job);
+        if (!t.append(e)) return;
+        for (Subscriber s : t.subscribers) {
+            if (s.closed.get()) continue; // leave() is on its way
+            if (!s.offer(e)) dropped.increment();
+        }
+        if (e.last()) t.finished = true;
+    }
+
+    private synchronized void leave(Topic t, Subscriber s) {
+        if (s.closed.compareAndSet(false, true)) subscriberCount.decrementAndGet();
+        t.subscribers.remove(s);
+        t.lastActivity = System.nanoTime();
+    }
+
+    /** Drop a topic and end every stream still on it. */
+    private synchronized void close(Topic t) {
+        t.subscribers.forEach(Subscriber::complete);
+        t.subscribers.clear();
+        if (topics.remove(t.jobId, t)) t.storeSub.close();
+    }
+
+    /** Heartbeat every open stream; drop topics whose replay window has passed. */
+    private void tick() {
+        long now = System.nanoTime();
+        for (Topic t : topics.values()) {
+            for (Subscriber s : t.subscribers) s.heartbeat();
+            boolean idle = t.finished || t.subscribers.isEmpty();
+            if (idle && now - t.lastActivity > replayRetentionNanos) {
+                synchronized (this) {
+                    if (t.subscribers.isEmpty() || t.finished) close(t);
+                }
+            }
+        }
+    }
+
+    private Event snapshot(ScanJobStore.Job job) {
+        try {
+            String json = om.writeValueAsString(new Snapshot(job.status, job.url, job.payloadJson));
+            return new Event(job.version, json, job.isFinished());
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot serialize snapshot for job " + job.id, e);
+        }
+    }
+
+    // ---- subscribers ----
+
+    /** One SSE connection with its own bounded buffer and at most one delivery task running. */
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final BlockingQueue<Event> buffer = new ArrayBlockingQueue<>(bufferSize);
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        private long lastQueuedId = -1; // guarded by this
+
+        Subscriber(SseEmitter emitter) { this.emitter = emitter; }
+
+        /** @return false if the subscriber is closed or its buffer overflowed (it is then dropped) */
+        boolean offer(Event e) {
+            if (closed.get()) return false;
+            synchronized (this) {
+                if (e.id() <= lastQueuedId) return true; // already queued (replay/publish overlap)
+                if (!buffer.offer(e)) {
+                    complete();
+                    return false;
+                }
+                lastQueuedId = e.id();
+            }
+            scheduleDrain();
+            return true;
+        }
+
+        /** Heartbeats are best effort: skipped, never fatal, when the buffer is full. */
+        void heartbeat() {
+            if (!closed.get() && buffer.isEmpty() && buffer.offer(Event.HEARTBEAT)) scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) delivery.execute(this::drain);
+        }
+
+        private void drain() {
+            do {
+                Event e;
+                while ((e = buffer.poll()) != null) {
+                    if (!send(e)) return;
+                }
+                draining.set(false);
+            } while (!buffer.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        private boolean send(Event e) {
+            try {
+                if (e.isHeartbeat()) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                    return true;
+                }
+                emitter.send(SseEmitter.event()
+                        .id(Long.toString(e.id()))
+                        .name("snapshot")
+                        .data(e.json(), MediaType.APPLICATION_JSON));
+                if (e.last()) complete(); // the stream ends with the job
+                return !e.last();
+            } catch (Exception ignored) {
+                // client disconnected; drop emitter
+                complete();
+                return false;
+            }
+        }
+
+        void complete() {
+            if (closed.compareAndSet(false, true)) subscriberCount.decrementAndGet();
+            buffer.clear();
+            try { emitter.complete(); } catch (Exception ignore) {}
+        }
+    }
+}
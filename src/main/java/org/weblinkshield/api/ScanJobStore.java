@@ -1,35 +1,54 @@
 package org.weblinkshield.api;
 
-import org.springframework.stereotype.Component;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
-
 import java.time.Instant;
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
-@Component
-public class ScanJobStore {
+/**
+ * Where scan jobs live between submit, pipeline stages and snapshot/stream reads.
+ *  - memory: per-node map (default); jobs are only visible on the node that created them
+ *  - jdbc:   shared scan_job table, so any node behind the load balancer can serve a job
+ * Selected with weblinkshield.scan.store.
+ */
+public interface ScanJobStore {
 
-    public static class Job {
+    class Job {
         public enum Status { QUEUED, CORE_RUNNING, STATIC_RUNNING, SANDBOX_RUNNING, DONE, ERROR }
         public final String id;
         public final String url;
         public volatile Status status = Status.QUEUED;
         public volatile String payloadJson = "{}"; // latest snapshot (verdict/reasons/etc.)
-        public final Instant created = Instant.now();
-        public volatile SseEmitter emitter; // optional
-        public Job(String id, String url) { this.id = id; this.url = url; }
+        public final Instant created;
+        public volatile Instant finished;   // set once status is DONE/ERROR
+        public volatile long version;       // bumped on every update; monotonic per job
+        long bytes;                         // in-memory store accounting
+        String storedPayload;               // jdbc store: payload as last written
+        public Job(String id, String url) { this(id, url, Instant.now()); }
+        public Job(String id, String url, Instant created) { this.id = id; this.url = url; this.created = created; }
+
+        public boolean isFinished() { return status == Status.DONE || status == Status.ERROR; }
     }
 
-    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    /** Told about a job's changes, and when the store drops the job (e.g. evicted). */
+    interface Listener {
+        void changed(Job job);
+        default void removed(Job job) {}
+    }
 
-    public Job create(String url) {
-        String id = UUID.randomUUID().toString();
-        Job j = new Job(id, url);
-        jobs.put(id, j);
-        return j;
+    /** Handle returned by {@link #subscribe}; closing it stops notifications. */
+    interface Subscription extends AutoCloseable {
+        @Override void close();
     }
 
-    public Job get(String id) { return jobs.get(id); }
+    Job create(String url);
+
+    /** Current state of a job, or null if unknown/evicted. */
+    Job get(String id);
+
+    /** Persist a job's status/payload change, bump its version and notify subscribers. */
+    void update(Job job);
+
+    /**
+     * Be told about every change to a job, wherever it happens (for the jdbc store that
+     * includes updates written by other nodes). Listeners must not block for long.
+     */
+    Subscription subscribe(String jobId, Listener listener);
 }
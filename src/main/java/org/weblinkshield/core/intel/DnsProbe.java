@@ -0,0 +1,8 @@
+package org.weblinkshield.core.intel;
+
+/** DNS half of host intel; swapped for {@link FakeIntelBackend} under the loadtest profile. */
+public interface DnsProbe {
+
+    /** First A/AAAA address of the host as a string, or null when it does not resolve. */
+    String resolve(String host);
+}
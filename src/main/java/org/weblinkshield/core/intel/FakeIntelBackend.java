@@ -0,0 +1,110 @@
+package org.weblinkshield.core.intel;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for DNS and TLS endpoints (profile "loadtest"), so load tests measure this
+ * service rather than the internet. Each probe waits latency + an exponential tail with mean
+ * jitter, then fails with failure-rate (unresolvable / no cert) or hangs past the intel budget
+ * with hang-rate. Answers are derived from the host name, so a host keeps its IP and
+ * certificate age across runs.
+ *
+ * Outcomes are counted as weblinkshield.loadtest.probes{probe=dns|tls,outcome=ok|failed|hung}.
+ */
+@Component
+@Profile("loadtest")
+public class FakeIntelBackend implements DnsProbe, TlsProbe {
+
+    /** Latency and failure model of one fake endpoint. */
+    private static final class Endpoint {
+        final long latencyNanos;
+        final double jitterNanos;
+        final double failureRate;
+        final double hangRate;
+        final Counter ok, failed, hung;
+
+        Endpoint(MeterRegistry registry, String probe, Duration latency, Duration jitter,
+                 double failureRate, double hangRate) {
+            this.latencyNanos = latency.toNanos();
+            this.jitterNanos = jitter.toNanos();
+            this.failureRate = failureRate;
+            this.hangRate = hangRate;
+            this.ok = counter(registry, probe, "ok");
+            this.failed = counter(registry, probe, "failed");
+            this.hung = counter(registry, probe, "hung");
+        }
+
+        private static Counter counter(MeterRegistry registry, String probe, String outcome) {
+            return Counter.builder("weblinkshield.loadtest.probes")
+                    .tag("probe", probe).tag("outcome", outcome).register(registry);
+        }
+
+        /** Simulate one call; false when it should fail. */
+        boolean call(Duration hang) {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            double roll = rnd.nextDouble();
+            if (roll < hangRate) {
+                hung.increment();
+                sleep(hang.toNanos());
+                return false;
+            }
+            long tail = jitterNanos > 0 ? (long) (-jitterNanos * Math.log(1 - rnd.nextDouble())) : 0;
+            sleep(latencyNanos + tail);
+            if (roll < hangRate + failureRate) {
+                failed.increment();
+                return false;
+            }
+            ok.increment();
+            return true;
+        }
+    }
+
+    private final Endpoint dns;
+    private final Endpoint tls;
+    private final Duration hang;
+
+    public FakeIntelBackend(MeterRegistry registry,
+                            @Value("${weblinkshield.loadtest.dns.latency:20ms}") Duration dnsLatency,
+                            @Value("${weblinkshield.loadtest.dns.jitter:30ms}") Duration dnsJitter,
+                            @Value("${weblinkshield.loadtest.dns.failure-rate:0.05}") double dnsFailureRate,
+                            @Value("${weblinkshield.loadtest.dns.hang-rate:0}") double dnsHangRate,
+                            @Value("${weblinkshield.loadtest.tls.latency:60ms}") Duration tlsLatency,
+                            @Value("${weblinkshield.loadtest.tls.jitter:120ms}") Duration tlsJitter,
+                            @Value("${weblinkshield.loadtest.tls.failure-rate:0.1}") double tlsFailureRate,
+                            @Value("${weblinkshield.loadtest.tls.hang-rate:0.01}") double tlsHangRate,
+                            @Value("${weblinkshield.loadtest.hang:30s}") Duration hang) {
+        this.dns = new Endpoint(registry, "dns", dnsLatency, dnsJitter, dnsFailureRate, dnsHangRate);
+        this.tls = new Endpoint(registry, "tls", tlsLatency, tlsJitter, tlsFailureRate, tlsHangRate);
+        this.hang = hang;
+    }
+
+    @Override
+    public String resolve(String host) {
+        if (!dns.call(hang)) return null;
+        int h = host.hashCode();
+        return "198.18." + ((h >>> 8) & 0xFF) + "." + (h & 0xFF); // RFC 2544 benchmarking range
+    }
+
+    @Override
+    public Cert probe(String host, Duration timeout) {
+        // a hung handshake ends at the caller's timeout, as the real probe's socket timeouts would
+        if (!tls.call(timeout.compareTo(hang) < 0 ? timeout : hang)) return null;
+        int h = host.hashCode() >>> 1;
+        return new Cert(h % 10 < 2 ? h % 30 : 30 + h % 900, "CN=Load Test CA, O=Weblink Shield");
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            Thread.sleep(Duration.ofNanos(nanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.weblinkshield.core.intel;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.weblinkshield.core.limit.Bulkhead;
+import org.weblinkshield.data.entity.HostIntel;
+import org.weblinkshield.data.repo.HostIntelRepo;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Per-host intel with a freshness window, keyed by the full hostname: DNS and TLS answers
+ * belong to the host itself, so a.example.com and b.example.com are probed separately (a
+ * subdomain that does not resolve, or an apex without HTTPS, must not speak for the other).
+ * Site-level facts (the public suffix via the PSL; a domain age, once collected) are derived
+ * from the registrable domain:
+ *  - in-memory cache of fresh rows (per host)
+ *  - falls back to the shared "host" row in the DB
+ *  - only collects over the network when the row is missing or stale
+ *
+ * Concurrent lookups for the same host share one in-flight collection (single-flight),
+ * so a burst of URLs on one host costs a single DNS lookup and TLS handshake.
+ * Reads and writes of the host table hold a db bulkhead permit, collection a network one
+ * (never both at once).
+ */
+@Service
+public class HostIntelService {
+
+    private final HostIntelRepo repo;
+    private final IntelCollector collector;
+    private final ExecutorService executor;
+    private final Bulkhead network;
+    private final Bulkhead db;
+    private final Duration freshness;
+    private final Duration partialFreshness;
+
+    private final Cache<String, HostIntel> fresh;
+    private final Map<String, CompletableFuture<HostIntel>> inFlight = new ConcurrentHashMap<>();
+
+    public HostIntelService(HostIntelRepo repo,
+                            IntelCollector collector,
+                            @Qualifier("intelExecutor") ExecutorService executor,
+                            @Qualifier("networkBulkhead") Bulkhead network,
+                            @Qualifier("dbBulkhead") Bulkhead db,
+                            MeterRegistry registry,
+                            @Value("${weblinkshield.intel.freshness:24h}") Duration freshness,
+                            @Value("${weblinkshield.intel.partial-freshness:10m}") Duration partialFreshness,
+                            @Value("${weblinkshield.intel.cache-size:50000}") long cacheSize) {
+        this.repo = repo;
+        this.collector = collector;
+        this.executor = executor;
+        this.network = network;
+        this.db = db;
+        this.freshness = freshness;
+        this.partialFreshness = partialFreshness;
+        this.fresh = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, HostIntel>() {
+                    @Override
+                    public long expireAfterCreate(String host, HostIntel hi, long now) {
+                        return remaining(hi);
+                    }
+                    @Override
+                    public long expireAfterUpdate(String host, HostIntel hi, long now, long current) {
+                        return remaining(hi);
+                    }
+                    @Override
+                    public long expireAfterRead(String host, HostIntel hi, long now, long current) {
+                        return current;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, fresh, "host_intel");
+    }
+
+    /**
+     * Return fresh, persisted intel for a host (never null).
+     * The returned entity is detached; callers only read it or use it as an FK reference.
+     */
+    public HostIntel lookup(String host) {
+        HostIntel cached = fresh.getIfPresent(host);
+        if (cached != null) return cached;
+
+        CompletableFuture<HostIntel> mine = new CompletableFuture<>();
+        CompletableFuture<HostIntel> leader = inFlight.putIfAbsent(host, mine);
+        if (leader != null) return await(leader);
+
+        try {
+            HostIntel hi = loadOrCollect(host);
+            fresh.put(host, hi);
+            mine.complete(hi);
+            return hi;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(host, mine);
+        }
+    }
+
+    /**
+     * Bulk variant of {@link #lookup}: cached hosts are free, the rest are read with one
+     * IN-list query, and only missing/stale hosts are collected - in parallel, one
+     * collection per distinct host.
+     */
+    public Map<String, HostIntel> lookupAll(Collection<String> hosts) {
+        Map<String, HostIntel> out = new HashMap<>(hosts.size() * 2);
+        Set<String> misses = new HashSet<>();
+        for (String h : hosts) {
+            HostIntel cached = fresh.getIfPresent(h);
+            if (cached != null) out.put(h, cached); else misses.add(h);
+        }
+        if (misses.isEmpty()) return out;
+
+        for (HostIntel row : db.call(() -> repo.findByDomainIn(misses))) {
+            if (isFresh(row)) {
+                fresh.put(row.getDomain(), row);
+                out.put(row.getDomain(), row);
+                misses.remove(row.getDomain());
+            }
+        }
+
+        Map<String, CompletableFuture<HostIntel>> pending = new HashMap<>();
+        for (String h : misses) {
+            pending.put(h, CompletableFuture.supplyAsync(() -> lookup(h), executor));
+        }
+        pending.forEach((h, f) -> out.put(h, await(f)));
+        return out;
+    }
+
+    /** Drop the cached entry so the next lookup re-reads (and possibly re-collects). */
+    public void evict(String host) { fresh.invalidate(host); }
+
+    // ---- internal helpers ----
+
+    private HostIntel loadOrCollect(String host) {
+        HostIntel stored = db.call(() -> repo.findByDomain(host).orElse(null));
+        if (stored != null && isFresh(stored)) return stored;
+
+        HostIntel collected = network.call(() -> collector.collect(host));
+        return db.call(() -> {
+            HostIntel row = stored;
+            if (row == null) {
+                try {
+                    return repo.save(collected);
+                } catch (DataIntegrityViolationException e) {
+                    // another node inserted the same host first; refresh that row instead
+                    row = repo.findByDomain(host).orElseThrow(() -> e);
+                }
+            }
+            copyIntel(collected, row);
+            return repo.save(row);
+        });
+    }
+
+    private boolean isFresh(HostIntel hi) {
+        return hi.getFetchedAt() != null && hi.getFetchedAt().plus(windowFor(hi)).isAfter(Instant.now());
+    }
+
+    /** Nanos until a row goes stale, counted from when it was fetched (not cached). */
+    private long remaining(HostIntel hi) {
+        if (hi.getFetchedAt() == null) return 0;
+        return Math.max(0, Duration.between(Instant.now(), hi.getFetchedAt().plus(windowFor(hi))).toNanos());
+    }
+
+    /** Partial intel (budget expired mid-collection) is retried much sooner. */
+    private Duration windowFor(HostIntel hi) {
+        return hi.isPartial() ? partialFreshness : freshness;
+    }
+
+    private static void copyIntel(HostIntel from, HostIntel to) {
+        to.setTld(from.getTld());
+        to.setIp(from.getIp());
+        to.setDomainAgeDays(from.getDomainAgeDays());
+        to.setTlsAgeDays(from.getTlsAgeDays());
+        to.setTlsIssuer(from.getTlsIssuer());
+        to.setFetchedAt(from.getFetchedAt());
+        to.setDnsProbed(from.isDnsProbed());
+        to.setTlsProbed(from.isTlsProbed());
+    }
+
+    private static HostIntel await(CompletableFuture<HostIntel> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.weblinkshield.core.intel;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.HttpsURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+/** Reads the server certificate from a quick HTTPS connection (no request body is fetched). */
+@Component
+@Profile("!loadtest")
+public class HttpsTlsProbe implements TlsProbe {
+
+    @Override
+    public Cert probe(String host, Duration timeout) {
+        // TLS: attempt a quick HTTPS connection to get server cert
+        try {
+            int millis = (int) timeout.toMillis();
+            URL u = URI.create("https://" + host + "/").toURL();
+            HttpsURLConnection conn = (HttpsURLConnection) u.openConnection();
+            conn.setConnectTimeout(millis);
+            conn.setReadTimeout(millis);
+            conn.setInstanceFollowRedirects(false);
+            try {
+                conn.connect();
+                Certificate[] certs = conn.getServerCertificates();
+                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate x509) {
+                    Date notBefore = x509.getNotBefore();
+                    long days = Duration.between(notBefore.toInstant(), Instant.now()).toDays();
+                    return new Cert((int) Math.max(0, days), x509.getIssuerX500Principal().getName());
+                }
+            } finally {
+                conn.disconnect();
+            }
+        } catch (Exception ignored) {}
+        return null;
+    }
+}
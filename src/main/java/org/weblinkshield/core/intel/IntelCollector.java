@@ -1,66 +1,138 @@
 package org.weblinkshield.core.intel;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.weblinkshield.core.normalize.PublicSuffixList;
 import org.weblinkshield.data.entity.HostIntel;
 
-import javax.net.ssl.HttpsURLConnection;
-import java.net.*;
-import java.security.cert.Certificate;
-import java.security.cert.X509Certificate;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 @Service
 public class IntelCollector {
 
+    private final ExecutorService executor;
+    private final DnsProbe dnsProbe;
+    private final TlsProbe tlsProbe;
+    private final Duration budget;
+    private final Timer collectComplete;
+    private final Timer collectPartial;
+    private final Timer dnsOk, dnsFailed, tlsOk, tlsFailed;
+
+    public IntelCollector(@Qualifier("intelExecutor") ExecutorService executor,
+                          DnsProbe dnsProbe,
+                          TlsProbe tlsProbe,
+                          @Value("${weblinkshield.intel.budget:2500ms}") Duration budget,
+                          MeterRegistry registry) {
+        this.executor = executor;
+        this.dnsProbe = dnsProbe;
+        this.tlsProbe = tlsProbe;
+        this.budget = budget;
+        this.collectComplete = collectTimer(registry, "complete");
+        this.collectPartial = collectTimer(registry, "partial");
+        this.dnsOk = probeTimer(registry, "dns", "ok");
+        this.dnsFailed = probeTimer(registry, "dns", "failed");
+        this.tlsOk = probeTimer(registry, "tls", "ok");
+        this.tlsFailed = probeTimer(registry, "tls", "failed");
+    }
+
+    private static Timer collectTimer(MeterRegistry registry, String result) {
+        return Timer.builder("weblinkshield.intel.collect")
+                .description("Host intel collection, both probes, bounded by weblinkshield.intel.budget")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Timer probeTimer(MeterRegistry registry, String probe, String outcome) {
+        return Timer.builder("weblinkshield.intel.probe")
+                .tag("probe", probe)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
     /**
      * Collect basic intel for a hostname:
      *  - resolve an IP (first A/AAAA)
      *  - fetch TLS cert and compute cert age in days (if HTTPS reachable)
      *
+     * Both probes run concurrently on the intel executor and share one deadline
+     * (weblinkshield.intel.budget). Whatever has finished when the budget expires is
+     * kept; a probe still running is flagged as not probed (dnsProbed / tlsProbed), so the
+     * rules treat its features as unavailable rather than as a host without DNS or TLS.
+     *
+     * Timed as weblinkshield.intel.collect{result=complete|partial}; each probe as
+     * weblinkshield.intel.probe{probe=dns|tls,outcome=ok|failed}, recorded when it returns
+     * (so probes abandoned at the budget still show their real duration).
+     *
      * Returns a HostIntel instance (fields may be null).
      */
     public HostIntel collect(String host) {
+        long start = System.nanoTime();
         HostIntel hi = new HostIntel();
-        try {
-            hi.setDomain(host);
-            String[] parts = host.split("\\.");
-            hi.setTld(parts.length > 0 ? parts[parts.length - 1] : null);
-
-            // DNS: pick first IP
-            InetAddress[] addrs = InetAddress.getAllByName(host);
-            if (addrs != null && addrs.length > 0) {
-                hi.setIp(addrs[0].getHostAddress());
-            }
-        } catch (Exception ignored) {}
+        hi.setDomain(host);
+        hi.setTld(PublicSuffixList.get().publicSuffix(host)); // "co.uk", "github.io"; null for IPs
 
-        // TLS: attempt a quick HTTPS connection to get server cert
+        CompletableFuture<String> dns = CompletableFuture.supplyAsync(timed(dnsOk, dnsFailed, () -> dnsProbe.resolve(host)), executor);
+        CompletableFuture<TlsProbe.Cert> tls = CompletableFuture.supplyAsync(timed(tlsOk, tlsFailed, () -> tlsProbe.probe(host, budget)), executor);
+
+        boolean partial = false;
         try {
-            URL u = new URL("https://" + host + "/");
-            HttpsURLConnection conn = (HttpsURLConnection) u.openConnection();
-            conn.setConnectTimeout(3000);
-            conn.setReadTimeout(3000);
-            conn.setInstanceFollowRedirects(false);
-            conn.connect();
-
-            Certificate[] certs = conn.getServerCertificates();
-            if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate xc) {
-                X509Certificate x509 = (X509Certificate) certs[0];
-                Date notBefore = x509.getNotBefore();
-                long days = Duration.between(notBefore.toInstant(), Instant.now()).toDays();
-                hi.setTlsAgeDays((int) Math.max(0, days));
-                hi.setTlsIssuer(x509.getIssuerX500Principal().getName());
-            }
-            conn.disconnect();
+            CompletableFuture.allOf(dns, tls).get(budget.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            partial = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            partial = true;
         } catch (Exception ignored) {
-            // leave TLS fields null if not reachable or no cert
+            // individual probes swallow their own failures
+        }
+
+        hi.setDnsProbed(dns.isDone());
+        hi.setTlsProbed(tls.isDone());
+        hi.setIp(dns.getNow(null));
+
+        TlsProbe.Cert t = tls.getNow(null);
+        if (t != null) {
+            hi.setTlsAgeDays(t.ageDays());
+            hi.setTlsIssuer(t.issuer());
         }
+        // leave TLS fields null if not reachable or no cert
 
-        // Domain age (WHOIS) — simplified: leave null for now OR you can call a WHOIS service later
+        // Probes still running past the budget are abandoned (their own timeouts end them)
+        if (partial) {
+            dns.cancel(true);
+            tls.cancel(true);
+        }
+
+        // Domain age (WHOIS) — simplified: leave null for now. It belongs to the registrable domain,
+        // so a WHOIS lookup should be keyed (and cached) per PublicSuffixList registrableDomain(host)
         hi.setDomainAgeDays(null);
 
         hi.setFetchedAt(Instant.now());
+        (partial ? collectPartial : collectComplete).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         return hi;
     }
+
+    /** A probe call that records its duration and whether it produced an answer. */
+    private static <T> Supplier<T> timed(Timer ok, Timer failed, Supplier<T> call) {
+        return () -> {
+            long start = System.nanoTime();
+            T result = null;
+            try {
+                return result = call.get();
+            } finally {
+                (result != null ? ok : failed).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
 }
@@ -0,0 +1,24 @@
+package org.weblinkshield.core.intel;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+
+/** Resolves through the JVM / OS resolver. */
+@Component
+@Profile("!loadtest")
+public class SystemDnsProbe implements DnsProbe {
+
+    @Override
+    public String resolve(String host) {
+        try {
+            // DNS: pick first IP
+            InetAddress[] addrs = InetAddress.getAllByName(host);
+            if (addrs != null && addrs.length > 0) {
+                return addrs[0].getHostAddress();
+            }
+        } catch (Exception ignored) {}
+        return null;
+    }
+}
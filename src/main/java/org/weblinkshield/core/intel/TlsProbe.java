@@ -0,0 +1,13 @@
+package org.weblinkshield.core.intel;
+
+import java.time.Duration;
+
+/** TLS half of host intel; swapped for {@link FakeIntelBackend} under the loadtest profile. */
+public interface TlsProbe {
+
+    /** Leaf certificate age + issuer. */
+    record Cert(int ageDays, String issuer) {}
+
+    /** Leaf certificate the host serves on 443, or null if unreachable or no cert. */
+    Cert probe(String host, Duration timeout);
+}
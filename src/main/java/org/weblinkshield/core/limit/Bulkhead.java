@@ -0,0 +1,76 @@
+package org.weblinkshield.core.limit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Semaphore-style concurrency limit for one downstream resource (DB pool, outbound network).
+ * With virtual threads the number of scans in flight is effectively unbounded, so the
+ * limit lives here, in front of the scarce resource, instead of in the thread pool size.
+ *
+ * Metrics (tagged resource=name):
+ *  - weblinkshield.bulkhead.active  permits in use
+ *  - weblinkshield.bulkhead.waiting callers queued for a permit
+ *  - weblinkshield.bulkhead.wait    time spent waiting for a permit
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final Semaphore permits;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Timer waitTimer;
+
+    public Bulkhead(String name, int limit, MeterRegistry registry) {
+        this.name = name;
+        this.permits = new Semaphore(limit, true);
+        Gauge.builder("weblinkshield.bulkhead.active", active, AtomicInteger::get)
+                .tag("resource", name).register(registry);
+        Gauge.builder("weblinkshield.bulkhead.waiting", waiting, AtomicInteger::get)
+                .tag("resource", name).register(registry);
+        Gauge.builder("weblinkshield.bulkhead.limit", () -> limit)
+                .tag("resource", name).register(registry);
+        this.waitTimer = Timer.builder("weblinkshield.bulkhead.wait")
+                .tag("resource", name)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public String name() { return name; }
+
+    /** Run {@code work} holding one permit; blocks (cheaply, on a virtual thread) until one is free. */
+    public <T> T call(Supplier<T> work) {
+        acquire();
+        try {
+            return work.get();
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    public void run(Runnable work) {
+        call(() -> { work.run(); return null; });
+    }
+
+    private void acquire() {
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + name + " permit", e);
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        active.incrementAndGet();
+    }
+}
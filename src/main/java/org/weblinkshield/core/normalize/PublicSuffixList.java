@@ -0,0 +1,248 @@
+package org.weblinkshield.core.normalize;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Public Suffix List lookups (eTLD and eTLD+1) over the bundled classpath:psl/public_suffix_list.dat
+ * (ICANN and private sections, so github.io or blogspot.com count as suffixes like co.uk does).
+ *
+ * Rules live in a reverse-label trie: com -> co -> ... Child edges are one open-addressed
+ * (parent, label hash) table, and a lookup hashes host labels in place, right to left, so the
+ * index methods allocate nothing; the String variants only allocate the returned substring.
+ * Hosts are expected in canonical form: lower-case ASCII (punycode), no trailing dot.
+ */
+public final class PublicSuffixList {
+
+    public static final String LOCATION = "psl/public_suffix_list.dat";
+
+    private static final int ROOT = 0;
+    private static final long EMPTY = -1L;
+
+    private static final class Holder {
+        static final PublicSuffixList DEFAULT = load();
+    }
+
+    /** The bundled list, loaded on first use. */
+    public static PublicSuffixList get() { return Holder.DEFAULT; }
+
+    // node data
+    private String[] labels;
+    private boolean[] rule;       // a rule ends here ("co.uk")
+    private boolean[] wildcard;   // "*.<this>" rule
+    private boolean[] exception;  // "!<this>.<parent>" rule
+    private int nodes = 1;
+
+    // edges: key = parent << 32 | label hash
+    private long[] keys;
+    private int[] children;
+    private int mask;
+
+    private PublicSuffixList(List<String> rules) {
+        int cap = Integer.highestOneBit(Math.max(16, rules.size() * 3)) << 1;
+        labels = new String[rules.size() + 2];
+        rule = new boolean[labels.length];
+        wildcard = new boolean[labels.length];
+        exception = new boolean[labels.length];
+        keys = new long[cap];
+        children = new int[cap];
+        mask = cap - 1;
+        Arrays.fill(keys, EMPTY);
+        for (String r : rules) add(r);
+    }
+
+    /** Build from rule lines in PSL format (comments and blank lines allowed). */
+    public static PublicSuffixList parse(InputStream in) throws IOException {
+        List<String> rules = new ArrayList<>(10_000);
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("//")) continue;
+                int ws = line.indexOf(' ');
+                rules.add(ws < 0 ? line : line.substring(0, ws));
+            }
+        }
+        return new PublicSuffixList(rules);
+    }
+
+    private static PublicSuffixList load() {
+        try (InputStream in = PublicSuffixList.class.getClassLoader().getResourceAsStream(LOCATION)) {
+            if (in == null) throw new IllegalStateException("Missing classpath:" + LOCATION);
+            return parse(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ---- lookups ----
+
+    /**
+     * Index in {@code host} where its public suffix starts (0 when the whole host is a suffix),
+     * or -1 for IP literals and empty hosts. Unlisted TLDs count as a one-label suffix.
+     */
+    public int suffixStart(CharSequence host) {
+        return suffixStart(host, 0, host.length());
+    }
+
+    /** {@link #suffixStart(CharSequence)} for the host at [from, to) of a longer string (e.g. a URL). */
+    public int suffixStart(CharSequence cs, int from, int to) {
+        if (from >= to || isIpLiteral(cs, from, to)) return -1;
+        int node = ROOT;
+        int end = to;     // current label is [s, end), walking right to left
+        int suffix = -1;
+        while (true) {
+            int s = end;
+            while (s > from && cs.charAt(s - 1) != '.') s--;
+            if (s == end) break; // empty label ("a..b")
+
+            int child = child(node, cs, s, end);
+            if (child >= 0 && exception[child]) { suffix = end + 1; break; }
+            // at the root the implicit "*" rule makes any TLD a suffix
+            if (node == ROOT || wildcard[node] || (child >= 0 && rule[child])) suffix = s;
+            if (child < 0 || s == from) break;
+            node = child;
+            end = s - 1;
+        }
+        return suffix < 0 ? from : suffix;
+    }
+
+    /**
+     * Index where the registrable domain (eTLD+1) starts, or -1 when there is none: the host
+     * is itself a public suffix, or an IP literal.
+     */
+    public int registrableStart(CharSequence host) {
+        return registrableStart(host, 0, host.length());
+    }
+
+    public int registrableStart(CharSequence cs, int from, int to) {
+        int suffix = suffixStart(cs, from, to);
+        if (suffix <= from) return -1;
+        int s = suffix - 1; // the dot before the suffix
+        while (s > from && cs.charAt(s - 1) != '.') s--;
+        return s == suffix - 1 ? -1 : s;
+    }
+
+    /** Public suffix of a host ("co.uk" for "a.b.co.uk"), or null for IP literals. */
+    public String publicSuffix(String host) {
+        int i = suffixStart(host);
+        return i < 0 ? null : host.substring(i);
+    }
+
+    /** eTLD+1 of a host ("b.co.uk" for "a.b.co.uk"), or null if it has none. */
+    public String registrableDomain(String host) {
+        int i = registrableStart(host);
+        return i < 0 ? null : host.substring(i);
+    }
+
+    private static boolean isIpLiteral(CharSequence cs, int from, int to) {
+        boolean numeric = true;
+        for (int i = from; i < to; i++) {
+            char c = cs.charAt(i);
+            if (c == ':' || c == '[') return true; // IPv6
+            if (c != '.' && (c < '0' || c > '9')) numeric = false;
+        }
+        return numeric;
+    }
+
+    // ---- trie ----
+
+    private void add(String raw) {
+        boolean exc = raw.startsWith("!");
+        String r = exc ? raw.substring(1) : raw;
+        boolean wild = r.startsWith("*.");
+        if (wild) r = r.substring(2);
+        String ascii;
+        try {
+            ascii = IDN.toASCII(r, IDN.ALLOW_UNASSIGNED).toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return; // not representable as a host name; cannot match canonical hosts anyway
+        }
+        int node = ROOT;
+        int end = ascii.length();
+        while (end > 0) {
+            int s = ascii.lastIndexOf('.', end - 1) + 1;
+            int child = child(node, ascii, s, end);
+            if (child < 0) child = newChild(node, ascii.substring(s, end));
+            node = child;
+            end = s - 1;
+        }
+        if (exc) exception[node] = true;
+        else if (wild) wildcard[node] = true;
+        else rule[node] = true;
+    }
+
+    private int newChild(int parent, String label) {
+        if (nodes == labels.length) {
+            int n = labels.length * 2;
+            labels = Arrays.copyOf(labels, n);
+            rule = Arrays.copyOf(rule, n);
+            wildcard = Arrays.copyOf(wildcard, n);
+            exception = Arrays.copyOf(exception, n);
+        }
+        if (nodes * 2 > keys.length) rehash();
+        int id = nodes++;
+        labels[id] = label;
+        put(key(parent, label, 0, label.length()), id);
+        return id;
+    }
+
+    private int child(int parent, CharSequence s, int from, int to) {
+        long key = key(parent, s, from, to);
+        int len = to - from;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == EMPTY) return -1;
+            if (k == key) {
+                String label = labels[children[i]];
+                if (label.length() == len && regionEquals(label, s, from)) return children[i];
+            }
+        }
+    }
+
+    private void put(long key, int child) {
+        int i = slot(key);
+        while (keys[i] != EMPTY) i = (i + 1) & mask;
+        keys[i] = key;
+        children[i] = child;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldChildren = children;
+        keys = new long[oldKeys.length * 2];
+        children = new int[keys.length];
+        mask = keys.length - 1;
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) put(oldKeys[i], oldChildren[i]);
+        }
+    }
+
+    private static long key(int parent, CharSequence s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) h = 31 * h + s.charAt(i);
+        return ((long) parent << 32) | (h & 0xFFFFFFFFL);
+    }
+
+    private int slot(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    private static boolean regionEquals(String label, CharSequence s, int from) {
+        for (int i = 0; i < label.length(); i++) {
+            if (label.charAt(i) != s.charAt(from + i)) return false;
+        }
+        return true;
+    }
+}
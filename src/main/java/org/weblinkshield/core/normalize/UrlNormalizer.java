@@ -1,32 +1,368 @@
 package org.weblinkshield.core.normalize;
 
 import java.net.IDN;
-import java.net.URI;
 import java.util.Arrays;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
+/**
+ * Canonical URL form used as the identity of a URL everywhere (url.url_canon, caches, lists):
+ *
+ *   scheme://[user@]host[:port]/path[?query]
+ *
+ *  - scheme lower-cased, "http" when missing; only hierarchical (scheme://) URLs are accepted
+ *  - host lower-cased, IDN to punycode, trailing root dot dropped; password and default port dropped
+ *  - path and query percent-encoding normalized (RFC 3986 6.2.2): escapes of unreserved chars
+ *    decoded, other escapes upper-cased, spaces, non-ASCII and unsafe chars encoded as UTF-8
+ *  - "." and ".." path segments removed, '\' read as '/' (as browsers do), empty path is "/"
+ *  - query parameters sorted, empty ones dropped; fragment dropped
+ *
+ * Hand-rolled single pass into one StringBuilder: no URI, regex or stream per call.
+ */
 public final class UrlNormalizer {
     private UrlNormalizer() {}
 
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /** Where a char is being written; decides which chars need escaping. */
+    private static final int USER = 0, PATH = 1, QUERY = 2;
+
+    /** Parameters up to which the query is sorted in place (insertion sort on offsets). */
+    private static final int SMALL_QUERY = 16;
+
     public static String canon(String raw) {
-        try {
-            URI u = new URI(raw.trim());
-            String scheme = Optional.ofNullable(u.getScheme()).orElse("http").toLowerCase();
-            String host = IDN.toASCII(Optional.ofNullable(u.getHost()).orElse("")).toLowerCase();
-            String path = Optional.ofNullable(u.getPath()).filter(p->!p.isEmpty()).orElse("/");
-            String query = Optional.ofNullable(u.getQuery()).orElse(null);
-
-            String base = scheme + "://" + host + path;
-            if (query == null || query.isEmpty()) return base;
-
-            // sort query params for stable canonicalization
-            String sorted = Arrays.stream(query.split("&"))
-                    .sorted()
-                    .collect(Collectors.joining("&"));
-            return base + "?" + sorted;
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Invalid URL: " + raw);
+        if (raw == null) throw invalid(null);
+        int from = 0, to = raw.length();
+        while (from < to && raw.charAt(from) <= ' ') from++;
+        while (to > from && raw.charAt(to - 1) <= ' ') to--;
+        if (from == to) throw invalid(raw);
+
+        StringBuilder sb = new StringBuilder(to - from + 16);
+
+        // ---- scheme ----
+        int i = from;
+        int schemeEnd = schemeEnd(raw, from, to);
+        String scheme;
+        if (schemeEnd > 0) {
+            for (int k = from; k < schemeEnd; k++) sb.append(lower(raw.charAt(k)));
+            scheme = sb.toString();
+            i = schemeEnd + 1;
+            int slashes = 0;
+            while (i < to && isSlash(raw.charAt(i))) { i++; slashes++; }
+            if (slashes == 0 && !scheme.equals("http") && !scheme.equals("https")) throw invalid(raw); // mailto:, javascript:, ...
+        } else {
+            sb.append("http");
+            scheme = "http";
+            if (i + 1 < to && isSlash(raw.charAt(i)) && isSlash(raw.charAt(i + 1))) i += 2; // //host/...
+        }
+        sb.append("://");
+
+        // ---- authority: [userinfo@]host[:port] ----
+        int authEnd = i;
+        while (authEnd < to && !isSlash(raw.charAt(authEnd)) && raw.charAt(authEnd) != '?' && raw.charAt(authEnd) != '#') {
+            authEnd++;
+        }
+        int hostStart = i;
+        int at = raw.lastIndexOf('@', authEnd - 1);
+        if (at >= i) {
+            int userEnd = i;
+            while (userEnd < at && raw.charAt(userEnd) != ':') userEnd++; // drop any password
+            if (userEnd > i) {
+                for (int k = i; k < userEnd; ) k = appendChar(raw, k, userEnd, sb, USER);
+                sb.append('@');
+            }
+            hostStart = at + 1;
+        }
+        int hostEnd = authEnd;
+        int port = -1;
+        if (hostStart < authEnd && raw.charAt(hostStart) == '[') {
+            int close = raw.indexOf(']', hostStart);
+            if (close < 0 || close >= authEnd) throw invalid(raw);
+            hostEnd = close + 1;
+            for (int k = hostStart; k < hostEnd; k++) {
+                char c = lower(raw.charAt(k));
+                if (!(c == '[' || c == ']' || c == ':' || c == '.' || isHex(c))) throw invalid(raw);
+                sb.append(c);
+            }
+            if (hostEnd < authEnd) {
+                if (raw.charAt(hostEnd) != ':') throw invalid(raw);
+                port = parsePort(raw, hostEnd + 1, authEnd);
+            }
+        } else {
+            int colon = raw.lastIndexOf(':', authEnd - 1);
+            if (colon >= hostStart) {
+                hostEnd = colon;
+                port = parsePort(raw, colon + 1, authEnd);
+            }
+            if (hostEnd > hostStart && raw.charAt(hostEnd - 1) == '.') hostEnd--; // fully-qualified form
+            if (hostEnd == hostStart) throw invalid(raw);
+            appendHost(raw, hostStart, hostEnd, sb);
+        }
+        if (port >= 0 && port != defaultPort(scheme)) sb.append(':').append(port);
+
+        // ---- path, with dot segments removed as they are written ----
+        i = authEnd;
+        int pathStart = sb.length();
+        sb.append('/');
+        if (i < to && isSlash(raw.charAt(i))) i++;
+        int segStart = sb.length();
+        while (true) {
+            char c = (i < to) ? raw.charAt(i) : '?';
+            boolean end = c == '?' || c == '#';
+            if (end || isSlash(c)) {
+                boolean dropped = closeSegment(sb, pathStart, segStart);
+                if (end) break;
+                if (!dropped) sb.append('/');
+                segStart = sb.length();
+                i++;
+            } else {
+                i = appendChar(raw, i, to, sb, PATH);
+            }
+        }
+
+        // ---- query (sorted), fragment dropped ----
+        if (i < to && raw.charAt(i) == '?') {
+            int qEnd = raw.indexOf('#', i);
+            if (qEnd < 0 || qEnd > to) qEnd = to;
+            appendQuery(raw, i + 1, qEnd, sb);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Host of a canonical URL (no userinfo or port), e.g. for intel and list lookups;
+     * cheaper than parsing the canon again with URI.
+     */
+    public static String host(String canon) {
+        int s = canon.indexOf("://");
+        s = (s < 0) ? 0 : s + 3;
+        int e = s;
+        while (e < canon.length() && canon.charAt(e) != '/' && canon.charAt(e) != '?' && canon.charAt(e) != '#') e++;
+        int at = canon.lastIndexOf('@', e - 1);
+        if (at >= s) s = at + 1;
+        if (s < e && canon.charAt(s) == '[') return canon.substring(s, canon.indexOf(']', s) + 1);
+        int colon = canon.indexOf(':', s);
+        return canon.substring(s, (colon >= 0 && colon < e) ? colon : e);
+    }
+
+    /**
+     * Registrable domain (eTLD+1 per the Public Suffix List) of a canonical host, used wherever
+     * hosts are grouped per site; the host itself for IP literals and bare public suffixes.
+     */
+    public static String site(String host) {
+        if (host == null) return null;
+        String site = PublicSuffixList.get().registrableDomain(host);
+        return site != null ? site : host;
+    }
+
+    // ---- scheme / authority ----
+
+    /** Index of the ':' ending a scheme, or -1 when the input starts with a host ("ex.com:8080/"). */
+    private static int schemeEnd(String raw, int from, int to) {
+        if (!isAlpha(raw.charAt(from))) return -1;
+        int i = from + 1;
+        while (i < to) {
+            char c = raw.charAt(i);
+            if (c == ':') break;
+            if (!(isAlpha(c) || (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.')) return -1;
+            i++;
+        }
+        if (i == to) return -1;
+        boolean slashes = i + 1 < to && isSlash(raw.charAt(i + 1));
+        if (!slashes && i + 1 < to && raw.charAt(i + 1) >= '0' && raw.charAt(i + 1) <= '9') return -1; // host:port
+        return i;
+    }
+
+    private static void appendHost(String raw, int from, int to, StringBuilder sb) {
+        boolean ascii = true;
+        for (int k = from; k < to; k++) if (raw.charAt(k) >= 0x80) { ascii = false; break; }
+        if (!ascii) {
+            String puny;
+            try {
+                puny = IDN.toASCII(raw.substring(from, to), IDN.ALLOW_UNASSIGNED);
+            } catch (IllegalArgumentException e) {
+                throw invalid(raw);
+            }
+            appendHost(puny, 0, puny.length(), sb);
+            return;
+        }
+        for (int k = from; k < to; k++) {
+            char c = lower(raw.charAt(k));
+            if (!(isAlpha(c) || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_')) throw invalid(raw);
+            sb.append(c);
+        }
+    }
+
+    private static int parsePort(String raw, int from, int to) {
+        if (from == to) return -1; // "host:" - no port
+        if (to - from > 5) throw invalid(raw);
+        int port = 0;
+        for (int k = from; k < to; k++) {
+            char c = raw.charAt(k);
+            if (c < '0' || c > '9') throw invalid(raw);
+            port = port * 10 + (c - '0');
+        }
+        if (port > 65535) throw invalid(raw);
+        return port;
+    }
+
+    private static int defaultPort(String scheme) {
+        return switch (scheme) {
+            case "http", "ws" -> 80;
+            case "https", "wss" -> 443;
+            case "ftp" -> 21;
+            default -> -1;
+        };
+    }
+
+    // ---- path ----
+
+    /**
+     * Remove the segment just written at [segStart, end) if it is "." or "..", popping the
+     * previous segment for "..". Returns true if it was removed (its '/' is reused).
+     */
+    private static boolean closeSegment(StringBuilder sb, int pathStart, int segStart) {
+        int len = sb.length() - segStart;
+        if (len == 1 && sb.charAt(segStart) == '.') {
+            sb.setLength(segStart);
+            return true;
+        }
+        if (len == 2 && sb.charAt(segStart) == '.' && sb.charAt(segStart + 1) == '.') {
+            int prev = segStart - 1; // the '/' before ".."
+            if (prev > pathStart) prev = sb.lastIndexOf("/", prev - 1);
+            sb.setLength(prev + 1);
+            return true;
         }
+        return false;
+    }
+
+    // ---- query ----
+
+    private static void appendQuery(String raw, int from, int to, StringBuilder sb) {
+        int params = 1;
+        for (int k = from; k < to; k++) if (raw.charAt(k) == '&') params++;
+        int[] bounds = new int[params * 2];
+
+        int qStart = sb.length() + 1;
+        sb.append('?');
+        int n = 0;
+        int k = from;
+        while (k <= to) {
+            int start = sb.length();
+            while (k < to && raw.charAt(k) != '&') k = appendChar(raw, k, to, sb, QUERY);
+            if (sb.length() > start) { bounds[2 * n] = start; bounds[2 * n + 1] = sb.length(); n++; }
+            k++; // skip '&'
+        }
+        if (n == 0) { sb.setLength(qStart - 1); return; }
+        if (n == 1) return;
+
+        char[] q = new char[sb.length() - qStart];
+        sb.getChars(qStart, sb.length(), q, 0);
+        for (int p = 0; p < 2 * n; p++) bounds[p] -= qStart;
+        sb.setLength(qStart);
+        if (n <= SMALL_QUERY) {
+            sortParams(q, bounds, n);
+            for (int p = 0; p < n; p++) {
+                if (p > 0) sb.append('&');
+                sb.append(q, bounds[2 * p], bounds[2 * p + 1] - bounds[2 * p]);
+            }
+        } else {
+            String[] sorted = new String[n];
+            for (int p = 0; p < n; p++) sorted[p] = new String(q, bounds[2 * p], bounds[2 * p + 1] - bounds[2 * p]);
+            Arrays.sort(sorted);
+            sb.append(String.join("&", sorted));
+        }
+    }
+
+    /** Stable insertion sort of (start, end) pairs by the chars they delimit. */
+    private static void sortParams(char[] q, int[] b, int n) {
+        for (int p = 1; p < n; p++) {
+            int s = b[2 * p], e = b[2 * p + 1];
+            int j = p - 1;
+            while (j >= 0 && compare(q, b[2 * j], b[2 * j + 1], s, e) > 0) {
+                b[2 * j + 2] = b[2 * j];
+                b[2 * j + 3] = b[2 * j + 1];
+                j--;
+            }
+            b[2 * j + 2] = s;
+            b[2 * j + 3] = e;
+        }
+    }
+
+    private static int compare(char[] q, int s1, int e1, int s2, int e2) {
+        int len = Math.min(e1 - s1, e2 - s2);
+        for (int k = 0; k < len; k++) {
+            int d = q[s1 + k] - q[s2 + k];
+            if (d != 0) return d;
+        }
+        return (e1 - s1) - (e2 - s2);
+    }
+
+    // ---- percent-encoding ----
+
+    /** Append the char at i (or the escape starting there) in normalized form; returns the next index. */
+    private static int appendChar(String raw, int i, int to, StringBuilder sb, int where) {
+        char c = raw.charAt(i);
+        if (c == '%') {
+            int hi = (i + 2 < to) ? Character.digit(raw.charAt(i + 1), 16) : -1;
+            int lo = (hi >= 0) ? Character.digit(raw.charAt(i + 2), 16) : -1;
+            if (lo < 0) { sb.append("%25"); return i + 1; } // stray '%'
+            int v = (hi << 4) | lo;
+            if (isUnreserved(v)) sb.append((char) v);
+            else sb.append('%').append(HEX[hi]).append(HEX[lo]);
+            return i + 3;
+        }
+        if (c < 0x80) {
+            if (mustEncode(c, where)) escape(sb, c);
+            else sb.append(c);
+            return i + 1;
+        }
+        int cp = raw.codePointAt(i);
+        if (Character.isSurrogate(c) && cp == c) cp = 0xFFFD; // lone surrogate
+        encodeUtf8(sb, cp);
+        return i + Character.charCount(cp == 0xFFFD ? c : cp);
+    }
+
+    private static boolean mustEncode(char c, int where) {
+        if (c <= 0x20 || c == 0x7F) return true;
+        switch (c) {
+            case '"', '<', '>', '`', '{', '}', '|', '^', '\\': return true;
+            case '@', ':', '/', '?', '#': return where == USER;
+            default: return false;
+        }
+    }
+
+    private static boolean isUnreserved(int c) {
+        return isAlpha((char) c) || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static void encodeUtf8(StringBuilder sb, int cp) {
+        if (cp < 0x800) {
+            escape(sb, 0xC0 | (cp >> 6));
+        } else if (cp < 0x10000) {
+            escape(sb, 0xE0 | (cp >> 12));
+            escape(sb, 0x80 | ((cp >> 6) & 0x3F));
+        } else {
+            escape(sb, 0xF0 | (cp >> 18));
+            escape(sb, 0x80 | ((cp >> 12) & 0x3F));
+            escape(sb, 0x80 | ((cp >> 6) & 0x3F));
+        }
+        escape(sb, 0x80 | (cp & 0x3F));
+    }
+
+    private static void escape(StringBuilder sb, int b) {
+        sb.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+
+    // ---- chars ----
+
+    private static boolean isSlash(char c) { return c == '/' || c == '\\'; }
+
+    private static boolean isAlpha(char c) { return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'); }
+
+    private static boolean isHex(char c) { return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'); }
+
+    private static char lower(char c) { return (c >= 'A' && c <= 'Z') ? (char) (c + 32) : c; }
+
+    private static IllegalArgumentException invalid(String raw) {
+        return new IllegalArgumentException("Invalid URL: " + raw);
     }
 }
@@ -0,0 +1,41 @@
+package org.weblinkshield.core.reputation;
+
+/**
+ * Bloom filter over 64-bit keys that are already uniformly distributed (hash prefixes), so the
+ * k probe positions come from double hashing on the key's two halves. Immutable once built.
+ */
+final class BloomFilter {
+
+    private final long[] bits;
+    private final long mask;
+    private final int k;
+
+    /** Sized for {@code expected} keys at false-positive rate {@code fpp}. */
+    BloomFilter(long expected, double fpp) {
+        long n = Math.max(1, expected);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        m = Long.highestOneBit(Math.max(64, m - 1)) << 1; // power of two: probe with a mask
+        this.bits = new long[(int) (m >>> 6)];
+        this.mask = m - 1;
+        this.k = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    void add(long key) {
+        long h1 = key, h2 = (key >>> 32) | 1;
+        for (int i = 0; i < k; i++) {
+            long bit = (h1 + i * h2) & mask;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long key) {
+        long h1 = key, h2 = (key >>> 32) | 1;
+        for (int i = 0; i < k; i++) {
+            long bit = (h1 + i * h2) & mask;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    long sizeInBytes() { return bits.length * 8L; }
+}
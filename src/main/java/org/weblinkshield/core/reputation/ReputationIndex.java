@@ -0,0 +1,60 @@
+package org.weblinkshield.core.reputation;
+
+import java.util.Arrays;
+
+/**
+ * In-heap list index: a Bloom filter answers most misses without touching the key array, and
+ * hits are confirmed by binary search over the sorted, de-duplicated keys (8 bytes per entry,
+ * no per-entry objects). Immutable; build a new one and swap it in to change the list.
+ */
+public final class ReputationIndex implements ReputationLookup {
+
+    public static final ReputationIndex EMPTY = new Builder().build();
+
+    private static final double FPP = 0.01;
+
+    private final long[] keys;
+    private final BloomFilter bloom;
+
+    private ReputationIndex(long[] keys) {
+        this.keys = keys;
+        this.bloom = new BloomFilter(keys.length, FPP);
+        for (long k : keys) bloom.add(k);
+    }
+
+    @Override
+    public boolean contains(long key) {
+        return bloom.mightContain(key) && Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    @Override
+    public long size() { return keys.length; }
+
+    public long sizeInBytes() { return keys.length * 8L + bloom.sizeInBytes(); }
+
+    /** Collects keys into a growable primitive array; not thread-safe. */
+    public static final class Builder {
+        private long[] buf = new long[1024];
+        private int n;
+
+        public Builder addUrl(String canon) { return add(ReputationKeys.urlKey(canon)); }
+
+        public Builder addHost(String host) { return add(ReputationKeys.hostKey(host)); }
+
+        public Builder add(long key) {
+            if (n == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            buf[n++] = key;
+            return this;
+        }
+
+        public ReputationIndex build() {
+            long[] sorted = Arrays.copyOf(buf, n);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[distinct - 1]) sorted[distinct++] = sorted[i];
+            }
+            return new ReputationIndex(Arrays.copyOf(sorted, distinct));
+        }
+    }
+}
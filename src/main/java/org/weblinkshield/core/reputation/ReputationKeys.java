@@ -0,0 +1,38 @@
+package org.weblinkshield.core.reputation;
+
+import org.weblinkshield.util.Sha256;
+
+/**
+ * 64-bit index keys: the first 8 bytes of SHA-256 over the canonical URL or the lower-case
+ * host name. Feeds may list URLs as SHA-256 hex of the canonical URL, which map to the same key.
+ */
+public final class ReputationKeys {
+    private ReputationKeys() {}
+
+    public static long urlKey(String canon) {
+        return prefix(Sha256.of(canon));
+    }
+
+    public static long hostKey(String host) {
+        return prefix(Sha256.of(host));
+    }
+
+    /** Key of a hex SHA-256 (64 chars) as found in URL-hash feeds. */
+    public static long hexKey(String hex) {
+        return Long.parseUnsignedLong(hex.substring(0, 16), 16);
+    }
+
+    public static boolean isSha256Hex(String s) {
+        if (s.length() != 64) return false;
+        for (int i = 0; i < 64; i++) {
+            if (Character.digit(s.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    private static long prefix(byte[] digest) {
+        long k = 0;
+        for (int i = 0; i < 8; i++) k = (k << 8) | (digest[i] & 0xFF);
+        return k;
+    }
+}
@@ -0,0 +1,38 @@
+package org.weblinkshield.core.reputation;
+
+/**
+ * Read-only set of listed URLs and hosts, addressed by {@link ReputationKeys}.
+ * A host matches when it or any parent domain (down to two labels) is listed.
+ */
+public interface ReputationLookup {
+
+    boolean contains(long key);
+
+    /** Number of distinct keys. */
+    long size();
+
+    default boolean matchesUrl(String canon) {
+        return size() > 0 && contains(ReputationKeys.urlKey(canon));
+    }
+
+    default boolean matchesHost(String host) {
+        if (host == null || host.isEmpty() || size() == 0) return false;
+        String h = host;
+        while (true) {
+            if (contains(ReputationKeys.hostKey(h))) return true;
+            int dot = h.indexOf('.');
+            if (dot < 0 || h.indexOf('.', dot + 1) < 0) return false; // never a bare TLD
+            h = h.substring(dot + 1);
+        }
+    }
+
+    /** Listed in either lookup. */
+    static ReputationLookup union(ReputationLookup a, ReputationLookup b) {
+        if (a.size() == 0) return b;
+        if (b.size() == 0) return a;
+        return new ReputationLookup() {
+            @Override public boolean contains(long key) { return a.contains(key) || b.contains(key); }
+            @Override public long size() { return a.size() + b.size(); }
+        };
+    }
+}
@@ -0,0 +1,202 @@
+package org.weblinkshield.core.reputation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.weblinkshield.core.normalize.UrlNormalizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Known-bad / known-good lists consulted before any host intel is collected.
+ *
+ * Feeds are local files, one entry per line ('#' comments allowed): a host name (hosts-file
+ * lines like "0.0.0.0 evil.example" work too), a full URL (canonicalized), or the SHA-256 hex of
+ * a canonical URL. Both lists are rebuilt on a background thread whenever a feed file changes
+ * (checked every refresh) and swapped in atomically; until the first build finishes, or when no
+ * feeds are configured, nothing is listed.
+ *
+ * For multi-million entry lists, build a {@link ReputationSnapshot} offline and point
+ * weblinkshield.reputation.snapshot at it: it is mapped (not loaded) during startup, re-mapped
+ * when the file is replaced, and consulted together with any feeds.
+ */
+@Service
+public class ReputationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReputationService.class);
+
+    public enum Listing { NONE, BLOCKED, ALLOWED }
+
+    private record Lists(ReputationLookup blocked, ReputationLookup allowed, String signature) {}
+
+    private final List<Path> blockFeeds;
+    private final List<Path> allowFeeds;
+    private final Path snapshot;
+    private volatile Lists lists = new Lists(ReputationIndex.EMPTY, ReputationIndex.EMPTY, "");
+
+    private final Counter blockedHits;
+    private final Counter allowedHits;
+    private final ScheduledExecutorService rebuilder =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("reputation-rebuild").factory());
+
+    public ReputationService(MeterRegistry registry,
+                             @Value("${weblinkshield.reputation.blocklist:}") String blocklist,
+                             @Value("${weblinkshield.reputation.allowlist:}") String allowlist,
+                             @Value("${weblinkshield.reputation.snapshot:}") String snapshot,
+                             @Value("${weblinkshield.reputation.refresh:10m}") Duration refresh) {
+        this.blockFeeds = paths(blocklist);
+        this.allowFeeds = paths(allowlist);
+        this.snapshot = snapshot.isBlank() ? null : Path.of(snapshot.strip());
+        if (this.snapshot != null) openSnapshotNow();
+        Gauge.builder("weblinkshield.reputation.entries", this, s -> s.lists.blocked().size())
+                .tag("list", "block").register(registry);
+        Gauge.builder("weblinkshield.reputation.entries", this, s -> s.lists.allowed().size())
+                .tag("list", "allow").register(registry);
+        this.blockedHits = Counter.builder("weblinkshield.reputation.matches").tag("list", "block").register(registry);
+        this.allowedHits = Counter.builder("weblinkshield.reputation.matches").tag("list", "allow").register(registry);
+        if (!blockFeeds.isEmpty() || !allowFeeds.isEmpty() || this.snapshot != null) {
+            rebuilder.scheduleWithFixedDelay(this::rebuildIfChanged, 0, refresh.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() { rebuilder.shutdownNow(); }
+
+    /** Blocklist wins over allowlist; URL and host (or a parent domain) entries both count. */
+    public Listing check(String canon, String host) {
+        Lists l = lists;
+        if (l.blocked().matchesUrl(canon) || l.blocked().matchesHost(host)) {
+            blockedHits.increment();
+            return Listing.BLOCKED;
+        }
+        if (l.allowed().matchesUrl(canon) || l.allowed().matchesHost(host)) {
+            allowedHits.increment();
+            return Listing.ALLOWED;
+        }
+        return Listing.NONE;
+    }
+
+    // ---- rebuild ----
+
+    private void rebuildIfChanged() {
+        try {
+            String sig = signature();
+            if (sig.equals(lists.signature())) return;
+            long start = System.nanoTime();
+            ReputationIndex blocked = load(blockFeeds);
+            ReputationIndex allowed = load(allowFeeds);
+            ReputationSnapshot snap = (snapshot != null && Files.exists(snapshot)) ? ReputationSnapshot.open(snapshot) : null;
+            lists = (snap == null)
+                    ? new Lists(blocked, allowed, sig)
+                    : new Lists(ReputationLookup.union(snap.blocked(), blocked),
+                                ReputationLookup.union(snap.allowed(), allowed), sig);
+            log.info("reputation lists rebuilt in {} ms: {} blocked ({} KB in heap), {} allowed",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    lists.blocked().size(), blocked.sizeInBytes() / 1024, lists.allowed().size());
+        } catch (Exception e) {
+            log.warn("reputation rebuild failed, keeping current lists: {}", e.toString());
+        }
+    }
+
+    /** Serve the snapshot alone right away; feeds are merged in by the first background rebuild. */
+    private void openSnapshotNow() {
+        try {
+            long start = System.nanoTime();
+            ReputationSnapshot snap = ReputationSnapshot.open(snapshot);
+            lists = new Lists(snap.blocked(), snap.allowed(), "");
+            log.info("reputation snapshot {} mapped in {} ms: {} blocked, {} allowed", snapshot,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    snap.blocked().size(), snap.allowed().size());
+        } catch (IOException e) {
+            log.warn("reputation snapshot {} not loaded: {}", snapshot, e.toString());
+        }
+    }
+
+    /** Changes whenever any feed or snapshot file is added, removed, resized or touched. */
+    private String signature() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        List<Path> files = concat(blockFeeds, allowFeeds);
+        if (snapshot != null) files.add(snapshot);
+        for (Path p : files) {
+            sb.append(p).append(':');
+            if (Files.exists(p)) sb.append(Files.size(p)).append('@').append(Files.getLastModifiedTime(p).toMillis());
+            sb.append(';');
+        }
+        return sb.toString();
+    }
+
+    static ReputationIndex load(List<Path> feeds) throws IOException {
+        ReputationIndex.Builder b = new ReputationIndex.Builder();
+        readFeeds(feeds, b::add);
+        return b.build();
+    }
+
+    static void readFeeds(List<Path> feeds, LongConsumer sink) throws IOException {
+        for (Path p : feeds) {
+            if (!Files.exists(p)) {
+                log.warn("reputation feed {} not found, skipped", p);
+                continue;
+            }
+            try (BufferedReader r = Files.newBufferedReader(p, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = r.readLine()) != null) parseEntry(line, sink);
+            }
+        }
+    }
+
+    static void addEntry(ReputationIndex.Builder b, String line) {
+        parseEntry(line, b::add);
+    }
+
+    /** Key of one feed line, if it holds an entry; shared with the snapshot builder. */
+    static void parseEntry(String line, LongConsumer sink) {
+        String entry = line.strip();
+        int comment = entry.indexOf(" #"); // a bare '#' may be a URL fragment
+        if (comment >= 0) entry = entry.substring(0, comment).strip();
+        if (entry.isEmpty() || entry.startsWith("#")) return;
+        if (entry.contains("://")) {
+            try {
+                sink.accept(ReputationKeys.urlKey(UrlNormalizer.canon(entry)));
+            } catch (IllegalArgumentException ignored) {
+                // unparseable feed line
+            }
+            return;
+        }
+        if (ReputationKeys.isSha256Hex(entry)) {
+            sink.accept(ReputationKeys.hexKey(entry));
+            return;
+        }
+        String[] tokens = entry.split("\\s+");
+        String host = tokens[tokens.length - 1].toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) host = host.substring(0, host.length() - 1);
+        if (!host.isEmpty()) sink.accept(ReputationKeys.hostKey(host));
+    }
+
+    private static List<Path> paths(String csv) {
+        return Arrays.stream(csv.split(",")).map(String::strip).filter(s -> !s.isEmpty()).map(Path::of).toList();
+    }
+
+    private static List<Path> concat(List<Path> a, List<Path> b) {
+        List<Path> all = new ArrayList<>(a);
+        all.addAll(b);
+        return all;
+    }
+}
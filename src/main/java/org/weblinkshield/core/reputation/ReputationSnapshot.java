@@ -0,0 +1,180 @@
+package org.weblinkshield.core.reputation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Immutable, memory-mapped block/allow list file, queried in place: opening it maps the file
+ * read-only and reads the 64-byte header, nothing else, so a node serves lookups milliseconds
+ * after start and every JVM on the box shares the same page-cache copy.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header   magic "WLSREP01", int format, int bucketBits, long records,
+ *            long blockCount, long allowCount, long createdMillis, 16 reserved bytes
+ *   index    (2^bucketBits + 1) ints: first record of each bucket (top key bits), padded to 8
+ *   records  16 bytes each, sorted by unsigned key: long key, long flags (1 = block, 2 = allow)
+ * </pre>
+ * A lookup is one index read plus a binary search over a bucket of a few records.
+ * Written by {@link ReputationSnapshotBuilder}.
+ */
+public final class ReputationSnapshot {
+
+    static final byte[] MAGIC = "WLSREP01".getBytes(StandardCharsets.US_ASCII);
+    static final int FORMAT = 1;
+    static final int HEADER_BYTES = 64;
+    static final int RECORD_BYTES = 16;
+    static final long BLOCK = 1, ALLOW = 2;
+
+    private final Path path;
+    private final MappedByteBuffer map;
+    private final int bucketBits;
+    private final long records;
+    private final long blockCount;
+    private final long allowCount;
+    private final long createdMillis;
+    private final int recordsOffset;
+
+    private ReputationSnapshot(Path path, MappedByteBuffer map) throws IOException {
+        this.path = path;
+        this.map = map;
+        byte[] magic = new byte[MAGIC.length];
+        map.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException(path + ": not a reputation snapshot");
+        int format = map.getInt(8);
+        if (format != FORMAT) throw new IOException(path + ": unsupported snapshot format " + format);
+        this.bucketBits = map.getInt(12);
+        this.records = map.getLong(16);
+        this.blockCount = map.getLong(24);
+        this.allowCount = map.getLong(32);
+        this.createdMillis = map.getLong(40);
+        if (bucketBits < 1 || bucketBits > 24) throw new IOException(path + ": bad bucket bits " + bucketBits);
+        this.recordsOffset = HEADER_BYTES + align8(4 * ((1 << bucketBits) + 1));
+        if ((long) recordsOffset + records * RECORD_BYTES != map.capacity()) {
+            throw new IOException(path + ": truncated snapshot");
+        }
+    }
+
+    /** Map a snapshot file; the mapping stays valid if the file is later replaced by rename. */
+    public static ReputationSnapshot open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException(path + ": snapshot larger than 2 GB");
+            return new ReputationSnapshot(path, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    public Path path() { return path; }
+
+    public long createdMillis() { return createdMillis; }
+
+    public ReputationLookup blocked() { return view(BLOCK, blockCount); }
+
+    public ReputationLookup allowed() { return view(ALLOW, allowCount); }
+
+    private ReputationLookup view(long flag, long count) {
+        return new ReputationLookup() {
+            @Override public boolean contains(long key) { return (flags(key) & flag) != 0; }
+            @Override public long size() { return count; }
+        };
+    }
+
+    /** Flags of a key, 0 if absent. */
+    long flags(long key) {
+        int bucket = (int) (key >>> (64 - bucketBits));
+        long lo = map.getInt(HEADER_BYTES + 4 * bucket);
+        long hi = map.getInt(HEADER_BYTES + 4 * (bucket + 1)) - 1L;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            int at = recordsOffset + (int) (mid * RECORD_BYTES);
+            int cmp = Long.compareUnsigned(map.getLong(at), key);
+            if (cmp == 0) return map.getLong(at + 8);
+            if (cmp < 0) lo = mid + 1; else hi = mid - 1;
+        }
+        return 0;
+    }
+
+    // ---- writing ----
+
+    /**
+     * Write a snapshot of the given keys (any order, duplicates allowed). The file is written
+     * next to {@code out} and moved into place atomically, so readers never see a partial file.
+     */
+    static void write(Path out, long[] block, long[] allow) throws IOException {
+        long[] b = sortedDistinct(block), a = sortedDistinct(allow);
+
+        // merge both lists into (key, flags) records in unsigned key order
+        long[] keys = new long[b.length + a.length];
+        long[] flags = new long[keys.length];
+        int n = 0, i = 0, j = 0;
+        while (i < b.length || j < a.length) {
+            int cmp = (i == b.length) ? 1 : (j == a.length) ? -1 : Long.compareUnsigned(b[i], a[j]);
+            if (cmp <= 0) { keys[n] = b[i]; flags[n] = BLOCK; i++; }
+            else { keys[n] = a[j]; flags[n] = 0; }
+            if (cmp >= 0) { keys[n] = a[j]; flags[n] |= ALLOW; j++; }
+            n++;
+        }
+
+        // ~8 records per bucket
+        int bucketBits = Math.max(1, Math.min(24, 64 - Long.numberOfLeadingZeros(Math.max(1, n / 8))));
+        int buckets = 1 << bucketBits;
+        int[] index = new int[buckets + 1];
+        for (int r = 0, bucket = 0; bucket <= buckets; bucket++) {
+            while (r < n && (keys[r] >>> (64 - bucketBits)) < bucket) r++;
+            index[bucket] = r;
+        }
+
+        Path tmp = out.resolveSibling(out.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.put(MAGIC).putInt(FORMAT).putInt(bucketBits).putLong(n)
+                    .putLong(b.length).putLong(a.length).putLong(System.currentTimeMillis());
+            writeFully(ch, header.clear());
+
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+            for (int v : index) {
+                if (buf.remaining() < 4) writeFully(ch, buf.flip());
+                buf.putInt(v);
+            }
+            if (((index.length * 4) & 7) != 0) {
+                if (buf.remaining() < 4) writeFully(ch, buf.flip());
+                buf.putInt(0);
+            }
+            for (int r = 0; r < n; r++) {
+                if (buf.remaining() < RECORD_BYTES) writeFully(ch, buf.flip());
+                buf.putLong(keys[r]).putLong(flags[r]);
+            }
+            writeFully(ch, buf.flip());
+            ch.force(true);
+        }
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long[] sortedDistinct(long[] keys) {
+        long[] s = keys.clone();
+        // unsigned order: flip the sign bit, sort signed, flip back
+        for (int i = 0; i < s.length; i++) s[i] ^= Long.MIN_VALUE;
+        Arrays.sort(s);
+        int d = 0;
+        for (int i = 0; i < s.length; i++) {
+            if (d == 0 || s[i] != s[d - 1]) s[d++] = s[i];
+        }
+        for (int i = 0; i < d; i++) s[i] ^= Long.MIN_VALUE;
+        return Arrays.copyOf(s, d);
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    private static int align8(int n) { return (n + 7) & ~7; }
+}
@@ -0,0 +1,66 @@
+package org.weblinkshield.core.reputation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Offline tool: turns block/allow feed files (same line format as the live feeds) into a
+ * {@link ReputationSnapshot} file that nodes map at startup via weblinkshield.reputation.snapshot.
+ *
+ * <pre>
+ *   java -cp app.jar -Dloader.main=org.weblinkshield.core.reputation.ReputationSnapshotBuilder \
+ *        org.springframework.boot.loader.launch.PropertiesLauncher \
+ *        --out reputation.snap --block feeds/phish.txt --block feeds/malware.txt --allow feeds/top.txt
+ * </pre>
+ */
+public final class ReputationSnapshotBuilder {
+    private ReputationSnapshotBuilder() {}
+
+    public static void main(String[] args) throws IOException {
+        Path out = null;
+        List<Path> block = new ArrayList<>(), allow = new ArrayList<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--out" -> out = Path.of(args[i + 1]);
+                case "--block" -> block.add(Path.of(args[i + 1]));
+                case "--allow" -> allow.add(Path.of(args[i + 1]));
+                default -> usage("unknown option " + args[i]);
+            }
+        }
+        if (out == null || (args.length & 1) != 0) usage("--out is required");
+
+        long start = System.nanoTime();
+        Keys b = new Keys(), a = new Keys();
+        ReputationService.readFeeds(block, b::add);
+        ReputationService.readFeeds(allow, a::add);
+        build(out, b.toArray(), a.toArray());
+        System.out.printf("%s: %d block, %d allow keys in %d ms%n",
+                out, b.n, a.n, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Write a snapshot from raw keys; see {@link ReputationKeys}. */
+    public static void build(Path out, long[] block, long[] allow) throws IOException {
+        ReputationSnapshot.write(out, block, allow);
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("usage: ReputationSnapshotBuilder --out FILE [--block FEED]... [--allow FEED]...");
+        System.exit(2);
+    }
+
+    private static final class Keys {
+        long[] buf = new long[1024];
+        int n;
+
+        void add(long k) {
+            if (n == buf.length) buf = Arrays.copyOf(buf, n * 2);
+            buf[n++] = k;
+        }
+
+        long[] toArray() { return Arrays.copyOf(buf, n); }
+    }
+}
@@ -0,0 +1,417 @@
+package org.weblinkshield.core.rules;
+
+import org.weblinkshield.core.normalize.PublicSuffixList;
+import org.weblinkshield.data.entity.HostIntel;
+import org.weblinkshield.data.entity.Verdict;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Immutable, validated form of a {@link RuleSet}: rules flattened into parallel primitive arrays
+ * evaluated against one {@link UrlFeatures} pass plus the host intel, with no per-rule objects
+ * or lookups on the hot path.
+ *
+ * Keyword groups share one {@link KeywordMatcher} over all their terms, so the lexical checks
+ * cost one pass over host and path regardless of dictionary size.
+ *
+ * {@link #classify} only needs the verdict band, so it visits rules heaviest first and stops as
+ * soon as the remaining rules can no longer move the score across a threshold.
+ */
+public final class CompiledRuleSet {
+
+    public static final String DEFAULT_LOCATION = "rules/default-rules.json";
+
+    /** Feature values that are not numbers: intel absent altogether, or the field itself null. */
+    private static final long UNAVAILABLE = Long.MIN_VALUE;
+    private static final long MISSING = Long.MIN_VALUE + 1;
+
+    enum Feature {
+        URL_LENGTH, DIGIT_COUNT, SLASH_COUNT, HAS_AT, HAS_LOGIN,
+        HOST_INTEL, RISKY_TLD, TLS_AGE_DAYS, DOMAIN_AGE_DAYS, HAS_IP
+    }
+
+    enum Op { GT, GE, LT, LE, EQ, TRUE, FALSE, MISSING }
+
+    enum Scope { URL, HOST, PATH, OUTSIDE_DOMAIN }
+
+    enum Match { SUBSTRING, TOKEN }
+
+    private final String version;
+    private final int malicious;
+    private final int suspicious;
+    private final Set<String> riskyTlds;
+
+    // rule i, in definition (= explain) order
+    private final String[] names;
+    private final int[] weights;
+    private final Feature[] features;
+    private final Op[] ops;
+    private final long[] values;
+    private final String[] reasons;
+    private final boolean[] tldReason;
+
+    // keyword group g; terms of all groups live in one matcher
+    private final KeywordMatcher keywords;
+    private final int[] termGroup;
+    private final String[] groupNames;
+    private final int[] groupWeights;
+    private final Scope[] groupScopes;
+    private final boolean[] groupTokens;
+    private final String[][] termOwners; // by term: registrable domains exempt from it (outside_domain)
+    private final int[] groupMaxHits;
+    private final String[] groupReasons;
+    private final int maxKeywordHits;
+
+    // reason template by rule / group name, for rebuilding stored hits
+    private final Map<String, String> templates;
+
+    // classify(): rule indexes by descending |weight|, and the min/max the rest can still add
+    // (keyword groups included, they are evaluated after the rules)
+    private final int[] order;
+    private final int[] restMin;
+    private final int[] restMax;
+
+    private CompiledRuleSet(RuleSet def) {
+        if (def.thresholds() == null) throw new IllegalArgumentException("thresholds missing");
+        this.version = def.version() == null ? "unversioned" : def.version();
+        this.malicious = def.thresholds().malicious();
+        this.suspicious = def.thresholds().suspicious();
+        if (suspicious > malicious) {
+            throw new IllegalArgumentException("suspicious threshold above malicious: " + suspicious + " > " + malicious);
+        }
+        Set<String> tlds = new HashSet<>();
+        if (def.riskyTlds() != null) def.riskyTlds().forEach(t -> tlds.add(t.toLowerCase(Locale.ROOT)));
+        this.riskyTlds = Set.copyOf(tlds);
+
+        List<RuleSet.Rule> rules = def.rules() == null ? List.of() : def.rules();
+        int n = rules.size();
+        names = new String[n];
+        weights = new int[n];
+        features = new Feature[n];
+        ops = new Op[n];
+        values = new long[n];
+        reasons = new String[n];
+        tldReason = new boolean[n];
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            RuleSet.Rule r = rules.get(i);
+            if (r.name() == null || r.name().isBlank()) throw new IllegalArgumentException("rule #" + i + ": name missing");
+            if (r.name().indexOf(':') >= 0) throw new IllegalArgumentException(r.name() + ": ':' not allowed in a rule name");
+            if (!seen.add(r.name())) throw new IllegalArgumentException("duplicate rule: " + r.name());
+            names[i] = r.name();
+            weights[i] = r.weight();
+            features[i] = parse(Feature.class, r.feature(), r.name());
+            ops[i] = parse(Op.class, r.op(), r.name());
+            boolean compares = ops[i].ordinal() <= Op.EQ.ordinal();
+            if (compares && r.value() == null) throw new IllegalArgumentException(r.name() + ": op " + r.op() + " needs a value");
+            values[i] = compares ? r.value() : 0;
+            reasons[i] = r.reason() == null ? r.name() : r.reason();
+            tldReason[i] = reasons[i].contains("{tld}");
+        }
+
+        List<RuleSet.KeywordGroup> groups = def.keywordGroups() == null ? List.of() : def.keywordGroups();
+        int g = groups.size();
+        groupNames = new String[g];
+        groupWeights = new int[g];
+        groupScopes = new Scope[g];
+        groupTokens = new boolean[g];
+        groupMaxHits = new int[g];
+        groupReasons = new String[g];
+        List<String> allTerms = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        List<String[]> ownedBy = new ArrayList<>();
+        int groupsMin = 0, groupsMax = 0, hitCap = 0;
+        for (int k = 0; k < g; k++) {
+            RuleSet.KeywordGroup kg = groups.get(k);
+            if (kg.name() == null || kg.name().isBlank()) throw new IllegalArgumentException("keyword group #" + k + ": name missing");
+            if (kg.name().indexOf(':') >= 0) throw new IllegalArgumentException(kg.name() + ": ':' not allowed in a rule name");
+            if (!seen.add(kg.name())) throw new IllegalArgumentException("duplicate rule: " + kg.name());
+            if (kg.terms() == null || kg.terms().isEmpty()) throw new IllegalArgumentException(kg.name() + ": no terms");
+            groupNames[k] = kg.name();
+            groupWeights[k] = kg.weight();
+            groupScopes[k] = kg.scope() == null ? Scope.URL : parse(Scope.class, kg.scope(), kg.name());
+            groupTokens[k] = kg.match() != null && parse(Match.class, kg.match(), kg.name()) == Match.TOKEN;
+            groupMaxHits[k] = kg.maxHits() == null ? 3 : kg.maxHits();
+            if (groupMaxHits[k] < 1) throw new IllegalArgumentException(kg.name() + ": maxHits must be >= 1");
+            groupReasons[k] = kg.reason() == null ? kg.name() + ": {term}" : kg.reason();
+            Set<String> distinct = new LinkedHashSet<>();
+            for (String t : kg.terms()) {
+                if (t == null || t.isBlank()) throw new IllegalArgumentException(kg.name() + ": blank term");
+                distinct.add(t.toLowerCase(Locale.ROOT));
+            }
+            Map<String, String[]> owned = new HashMap<>();
+            if (kg.owners() != null) {
+                if (groupScopes[k] != Scope.OUTSIDE_DOMAIN) throw new IllegalArgumentException(kg.name() + ": owners need scope outside_domain");
+                kg.owners().forEach((t, domains) -> {
+                    String term = t.toLowerCase(Locale.ROOT);
+                    if (!distinct.contains(term)) throw new IllegalArgumentException(kg.name() + ": owners of unknown term " + t);
+                    owned.put(term, domains.stream().map(d -> d.toLowerCase(Locale.ROOT)).toArray(String[]::new));
+                });
+            }
+            for (String t : distinct) ownedBy.add(owned.getOrDefault(t, new String[0]));
+            allTerms.addAll(distinct);
+            for (int i = 0; i < distinct.size(); i++) owners.add(k);
+            int most = kg.weight() * groupMaxHits[k];
+            groupsMin += Math.min(most, 0);
+            groupsMax += Math.max(most, 0);
+            hitCap += groupMaxHits[k];
+        }
+        keywords = KeywordMatcher.of(allTerms); // rejects a term listed in two groups
+        Map<String, String> byName = new HashMap<>();
+        for (int i = 0; i < n; i++) byName.put(names[i], reasons[i]);
+        for (int k = 0; k < g; k++) byName.put(groupNames[k], groupReasons[k]);
+        templates = Map.copyOf(byName);
+        termGroup = owners.stream().mapToInt(Integer::intValue).toArray();
+        termOwners = ownedBy.toArray(new String[0][]);
+        maxKeywordHits = hitCap;
+
+        Integer[] byWeight = new Integer[n];
+        for (int i = 0; i < n; i++) byWeight[i] = i;
+        Arrays.sort(byWeight, Comparator.comparingInt(i -> -Math.abs(weights[i])));
+        order = new int[n];
+        restMin = new int[n + 1];
+        restMax = new int[n + 1];
+        restMin[n] = groupsMin;
+        restMax[n] = groupsMax;
+        for (int k = n - 1; k >= 0; k--) {
+            order[k] = byWeight[k];
+            int w = weights[order[k]];
+            restMin[k] = restMin[k + 1] + Math.min(w, 0);
+            restMax[k] = restMax[k + 1] + Math.max(w, 0);
+        }
+    }
+
+    public static CompiledRuleSet compile(RuleSet def) {
+        return new CompiledRuleSet(def);
+    }
+
+    public static CompiledRuleSet compile(InputStream in) {
+        try {
+            return compile(RuleSet.read(in));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read rule set", e);
+        }
+    }
+
+    /** The rule set bundled with the application. */
+    public static CompiledRuleSet defaults() {
+        try (InputStream in = CompiledRuleSet.class.getClassLoader().getResourceAsStream(DEFAULT_LOCATION)) {
+            if (in == null) throw new IllegalStateException("Missing classpath:" + DEFAULT_LOCATION);
+            return compile(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String version() { return version; }
+
+    public int size() { return names.length; }
+
+    public Verdict.Status statusFor(int score) {
+        if (score >= malicious) return Verdict.Status.malicious;
+        if (score >= suspicious) return Verdict.Status.suspicious;
+        return Verdict.Status.safe;
+    }
+
+    /** Total score over every rule, in definition order; hits may be null (score only). */
+    int evaluate(UrlFeatures f, HostIntel hi, List<RulesEngine.Hit> hits) {
+        int s = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (!fires(i, f, hi)) continue;
+            s += weights[i];
+            if (hits != null) {
+                String tld = tldReason[i] ? tld(hi) : null;
+                hits.add(new RulesEngine.Hit(names[i], weights[i], tld == null ? reasons[i] : reasons[i].replace("{tld}", tld), tld));
+            }
+        }
+        if (termGroup.length > 0) {
+            KeywordScan scan = scan(f);
+            for (int h = 0; h < scan.found; h++) {
+                int t = scan.terms[h], k = termGroup[t];
+                s += groupWeights[k];
+                if (hits != null) {
+                    String term = keywords.term(t);
+                    hits.add(new RulesEngine.Hit(groupNames[k], groupWeights[k], groupReasons[k].replace("{term}", term), term));
+                }
+            }
+        }
+        return s;
+    }
+
+    /** Verdict band only; skips the remaining rules once they cannot change it. */
+    Verdict.Status classify(UrlFeatures f, HostIntel hi) {
+        int s = 0;
+        for (int k = 0; k < order.length; k++) {
+            Verdict.Status low = statusFor(s + restMin[k]);
+            if (low == statusFor(s + restMax[k])) return low;
+            int i = order[k];
+            if (fires(i, f, hi)) s += weights[i];
+        }
+        if (termGroup.length > 0 && statusFor(s + restMin[order.length]) != statusFor(s + restMax[order.length])) {
+            KeywordScan scan = scan(f);
+            for (int h = 0; h < scan.found; h++) s += groupWeights[termGroup[scan.terms[h]]];
+        }
+        return statusFor(s);
+    }
+
+    // ---- keywords ----
+
+    /**
+     * Per-URL keyword results, kept in the caller's {@link UrlFeatures} so repeated scoring
+     * reuses the buffers. Records distinct terms in match order, at most maxHits per group.
+     */
+    static final class KeywordScan implements KeywordMatcher.Sink {
+        private CompiledRuleSet owner;
+        int[] terms = new int[0];
+        int found;
+        private int[] perGroup = new int[0];
+        private CharSequence url;
+        private int siteStart, hostEnd, nameEnd;
+
+        @Override
+        public boolean match(int term, int start, int end) {
+            CompiledRuleSet rs = owner;
+            int k = rs.termGroup[term];
+            if (perGroup[k] == rs.groupMaxHits[k]) return true;
+            if (rs.groupTokens[k] && (isWordChar(start - 1) || isWordChar(end))) return true;
+            boolean inScope = switch (rs.groupScopes[k]) {
+                case URL -> true;
+                case HOST -> end <= nameEnd;
+                case PATH -> start >= hostEnd;
+                case OUTSIDE_DOMAIN -> !siteIsOneOf(rs.termOwners[term]);
+            };
+            if (!inScope) return true;
+            for (int h = 0; h < found; h++) if (terms[h] == term) return true;
+            terms[found++] = term;
+            perGroup[k]++;
+            return found < terms.length; // every group full: nothing left to find
+        }
+
+        /** Letters and digits continue a token; anything else (., -, /, _ ...) ends it. */
+        private boolean isWordChar(int i) {
+            return i >= 0 && i < url.length() && Character.isLetterOrDigit(url.charAt(i));
+        }
+
+        private boolean siteIsOneOf(String[] domains) {
+            int len = nameEnd - siteStart;
+            for (String d : domains) {
+                if (d.length() != len) continue;
+                int i = 0;
+                while (i < len && Character.toLowerCase(url.charAt(siteStart + i)) == d.charAt(i)) i++;
+                if (i == len) return true;
+            }
+            return false;
+        }
+    }
+
+    private KeywordScan scan(UrlFeatures f) {
+        KeywordScan scan = f.keywordScan;
+        if (scan == null) scan = f.keywordScan = new KeywordScan();
+        if (scan.owner != this) {
+            scan.owner = this;
+            scan.terms = new int[maxKeywordHits];
+            scan.perGroup = new int[groupNames.length];
+        }
+        scan.found = 0;
+        Arrays.fill(scan.perGroup, 0);
+
+        // canon is scheme://host[:port]/path?query; match host and path only
+        CharSequence url = f.url;
+        int len = url.length();
+        int hostStart = 0;
+        for (int i = 0; i + 2 < len; i++) {
+            char c = url.charAt(i);
+            if (c == ':' && url.charAt(i + 1) == '/' && url.charAt(i + 2) == '/') { hostStart = i + 3; break; }
+            if (c == '/' || c == '?' || c == '#') break;
+        }
+        int hostEnd = hostStart;
+        while (hostEnd < len && "/?#".indexOf(url.charAt(hostEnd)) < 0) hostEnd++;
+        int nameEnd = hostEnd;
+        for (int i = hostEnd - 1; i >= hostStart && url.charAt(i) != ']'; i--) {
+            if (url.charAt(i) == ':') { nameEnd = i; break; }
+        }
+        int siteStart = PublicSuffixList.get().registrableStart(url, hostStart, nameEnd);
+        if (siteStart < 0) siteStart = hostStart;
+        int pathEnd = hostEnd;
+        while (pathEnd < len && url.charAt(pathEnd) != '?' && url.charAt(pathEnd) != '#') pathEnd++;
+
+        scan.url = url;
+        scan.siteStart = siteStart;
+        scan.hostEnd = hostEnd;
+        scan.nameEnd = nameEnd;
+        keywords.match(url, hostStart, pathEnd, scan);
+        return scan;
+    }
+
+    private boolean fires(int i, UrlFeatures f, HostIntel hi) {
+        long v = value(features[i], f, hi);
+        if (v == UNAVAILABLE) return false;
+        return switch (ops[i]) {
+            case MISSING -> v == MISSING;
+            case TRUE -> v == 1;
+            case FALSE -> v == 0;
+            case GT -> v != MISSING && v > values[i];
+            case GE -> v != MISSING && v >= values[i];
+            case LT -> v != MISSING && v < values[i];
+            case LE -> v != MISSING && v <= values[i];
+            case EQ -> v != MISSING && v == values[i];
+        };
+    }
+
+    private long value(Feature feature, UrlFeatures f, HostIntel hi) {
+        return switch (feature) {
+            case URL_LENGTH -> f.length;
+            case DIGIT_COUNT -> f.digits;
+            case SLASH_COUNT -> f.slashes;
+            case HAS_AT -> f.hasAt ? 1 : 0;
+            case HAS_LOGIN -> f.hasLogin ? 1 : 0;
+            case HOST_INTEL -> hi == null ? MISSING : 1;
+            case RISKY_TLD -> hi == null ? UNAVAILABLE : (isRiskyTld(hi.getTld()) ? 1 : 0);
+            case TLS_AGE_DAYS -> hi == null || !hi.isTlsProbed() ? UNAVAILABLE : orMissing(hi.getTlsAgeDays());
+            case DOMAIN_AGE_DAYS -> hi == null ? UNAVAILABLE : orMissing(hi.getDomainAgeDays());
+            case HAS_IP -> hi == null || !hi.isDnsProbed() ? UNAVAILABLE : (hi.getIp() == null || hi.getIp().isBlank() ? 0 : 1);
+        };
+    }
+
+    /**
+     * Risky if the public suffix itself is listed ("github.io" style free hosting) or its
+     * top-level label is ("tk" also covers "co.tk").
+     */
+    public boolean isRiskyTld(String suffix) {
+        if (suffix == null) return false;
+        String s = suffix.toLowerCase(Locale.ROOT);
+        if (riskyTlds.contains(s)) return true;
+        int dot = s.lastIndexOf('.');
+        return dot >= 0 && riskyTlds.contains(s.substring(dot + 1));
+    }
+
+    private static String tld(HostIntel hi) {
+        return (hi == null || hi.getTld() == null) ? "" : hi.getTld().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Reason text of a stored hit (rule or keyword group name plus its template argument) under
+     * this rule set's templates, or null when the rule set has no such rule.
+     */
+    public String reason(String name, String arg) {
+        String template = templates.get(name);
+        if (template == null) return null;
+        return arg == null ? template : template.replace("{tld}", arg).replace("{term}", arg);
+    }
+
+    private static long orMissing(Integer v) {
+        return v == null ? MISSING : v;
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String name, String rule) {
+        if (name == null) throw new IllegalArgumentException(rule + ": " + type.getSimpleName().toLowerCase() + " missing");
+        try {
+            return Enum.valueOf(type, name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(rule + ": unknown " + type.getSimpleName().toLowerCase() + " '" + name + "'");
+        }
+    }
+}
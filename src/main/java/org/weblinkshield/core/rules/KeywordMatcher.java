@@ -0,0 +1,173 @@
+package org.weblinkshield.core.rules;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over a fixed dictionary: finds every occurrence of every term in one
+ * left-to-right pass, so the cost per character does not depend on how many terms there are.
+ * Matching is case-insensitive (terms are lower-cased at build time, input per character).
+ *
+ * Transitions are stored sparsely in one open-addressed (state, char) -> state table instead of
+ * a dense alphabet-wide array per state, which keeps tens of thousands of terms in a few MB.
+ * Instances are immutable and thread-safe.
+ */
+public final class KeywordMatcher {
+
+    /** Receives matches in order of their end position. */
+    public interface Sink {
+        /**
+         * @param term index of the term in the build list
+         * @param start index of the first matched char in the input
+         * @param end   index after the last matched char
+         * @return false to stop matching
+         */
+        boolean match(int term, int start, int end);
+    }
+
+    private static final int ROOT = 0;
+
+    private final String[] terms;
+    private final int[] termLength;
+
+    // goto function: key = state << 16 | char, linear probing; EMPTY marks a free slot
+    private static final long EMPTY = -1L;
+    private final long[] keys;
+    private final int[] targets;
+    private final int mask;
+
+    private final int[] fail;     // longest proper suffix state
+    private final int[] output;   // term ending exactly at this state, or -1
+    private final int[] dictLink; // nearest suffix state (via fail) with an output, or -1
+
+    private KeywordMatcher(List<String> dictionary) {
+        this.terms = dictionary.toArray(new String[0]);
+        this.termLength = new int[terms.length];
+
+        // 1) trie, built with boxed maps; flattened below
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> out = new ArrayList<>();
+        trie.add(new HashMap<>());
+        out.add(-1);
+        int edges = 0;
+        for (int t = 0; t < terms.length; t++) {
+            String term = terms[t];
+            int s = ROOT;
+            for (int i = 0; i < term.length(); i++) {
+                char c = term.charAt(i);
+                Integer next = trie.get(s).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new HashMap<>());
+                    out.add(-1);
+                    trie.get(s).put(c, next);
+                    edges++;
+                }
+                s = next;
+            }
+            if (out.get(s) != -1) throw new IllegalArgumentException("duplicate keyword: " + term);
+            out.set(s, t);
+            termLength[t] = term.length();
+        }
+
+        int states = trie.size();
+        int cap = Integer.highestOneBit(Math.max(2, edges * 2 - 1)) << 1;
+        this.keys = new long[cap];
+        this.targets = new int[cap];
+        this.mask = cap - 1;
+        Arrays.fill(keys, EMPTY);
+        for (int s = 0; s < states; s++) {
+            for (var e : trie.get(s).entrySet()) put(s, e.getKey(), e.getValue());
+        }
+
+        // 2) failure and dictionary links, breadth first
+        this.fail = new int[states];
+        this.output = new int[states];
+        this.dictLink = new int[states];
+        for (int s = 0; s < states; s++) output[s] = out.get(s);
+        dictLink[ROOT] = -1;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : trie.get(ROOT).values()) {
+            fail[child] = ROOT;
+            dictLink[child] = -1;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (var e : trie.get(s).entrySet()) {
+                char c = e.getKey();
+                int child = e.getValue();
+                int f = fail[s];
+                int g;
+                while ((g = next(f, c)) < 0 && f != ROOT) f = fail[f];
+                fail[child] = (g >= 0) ? g : ROOT;
+                int fc = fail[child];
+                dictLink[child] = output[fc] >= 0 ? fc : dictLink[fc];
+                queue.add(child);
+            }
+        }
+    }
+
+    /** Build from a term list; blank terms are rejected, case is ignored. */
+    public static KeywordMatcher of(Collection<String> dictionary) {
+        List<String> normalized = new ArrayList<>(dictionary.size());
+        for (String term : dictionary) {
+            if (term == null || term.isBlank()) throw new IllegalArgumentException("blank keyword");
+            normalized.add(lower(term));
+        }
+        return new KeywordMatcher(normalized);
+    }
+
+    public int size() { return terms.length; }
+
+    public String term(int id) { return terms[id]; }
+
+    /** Report every occurrence of every term in text[from, to). */
+    public void match(CharSequence text, int from, int to, Sink sink) {
+        int s = ROOT;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') c = (char) (c + 32);
+            else if (c >= 0x80) c = Character.toLowerCase(c);
+
+            int g;
+            while ((g = next(s, c)) < 0 && s != ROOT) s = fail[s];
+            s = (g >= 0) ? g : ROOT;
+
+            for (int o = (output[s] >= 0) ? s : dictLink[s]; o >= 0; o = dictLink[o]) {
+                int t = output[o];
+                if (!sink.match(t, i + 1 - termLength[t], i + 1)) return;
+            }
+        }
+    }
+
+    // ---- transition table ----
+
+    private void put(int state, char c, int target) {
+        long key = ((long) state << 16) | c;
+        int i = slot(key);
+        while (keys[i] != EMPTY) i = (i + 1) & mask;
+        keys[i] = key;
+        targets[i] = target;
+    }
+
+    /** Child of state on c, or -1. */
+    private int next(int state, char c) {
+        long key = ((long) state << 16) | c;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) return targets[i];
+            if (k == EMPTY) return -1;
+        }
+    }
+
+    private int slot(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    private static String lower(String term) {
+        StringBuilder sb = new StringBuilder(term.length());
+        for (int i = 0; i < term.length(); i++) sb.append(Character.toLowerCase(term.charAt(i)));
+        return sb.toString();
+    }
+}
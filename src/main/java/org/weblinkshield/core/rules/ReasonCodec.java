@@ -0,0 +1,122 @@
+package org.weblinkshield.core.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stored form of rule hits (verdict.reasons_json): a JSON array of compact codes,
+ * {@code ["risky_tld:20:tk","no_dns:10"]}, i.e. rule name, weight and the template argument
+ * if the reason has one. Reason texts are not stored; {@link #decode} rebuilds them from the
+ * active rule set's templates, so a reworded reason applies to stored verdicts too. The rule
+ * name is the stable id (rule sets reject duplicates and it already tags the hit metrics).
+ *
+ * Encoding and decoding are hand-rolled over this fixed shape, without a JSON tree. Rows
+ * written before this format ({@code [{"name":..,"weight":..,"reason":..}]}) still decode.
+ */
+public final class ReasonCodec {
+    private ReasonCodec() {}
+
+    private static final ObjectMapper LEGACY = new ObjectMapper();
+    private static final List<RulesEngine.Hit> BUILTINS =
+            List.of(RulesEngine.INVALID_URL, RulesEngine.BLOCKLISTED, RulesEngine.ALLOWLISTED);
+
+    public static String encode(List<RulesEngine.Hit> hits) {
+        StringBuilder sb = new StringBuilder(2 + hits.size() * 24).append('[');
+        for (int i = 0; i < hits.size(); i++) {
+            RulesEngine.Hit h = hits.get(i);
+            if (i > 0) sb.append(',');
+            sb.append('"');
+            escape(sb, h.name);
+            sb.append(':').append(h.weight);
+            if (h.arg != null) escape(sb.append(':'), h.arg);
+            sb.append('"');
+        }
+        return sb.append(']').toString();
+    }
+
+    /** Hits of a stored value, with reasons from {@code rules}; null or blank decodes to none. */
+    public static List<RulesEngine.Hit> decode(String stored, CompiledRuleSet rules) {
+        if (stored == null || stored.isBlank()) return List.of();
+        String s = stored.strip();
+        if (s.charAt(0) == '"') { // stored as a JSON string (H2 does this for text bound to a json column)
+            StringBuilder inner = new StringBuilder(s.length());
+            unescape(s, 1, inner);
+            return decode(inner.toString(), rules);
+        }
+        int i = stored.indexOf('[') + 1;
+        while (i < stored.length() && Character.isWhitespace(stored.charAt(i))) i++;
+        if (i < stored.length() && stored.charAt(i) == '{') return decodeLegacy(stored);
+        List<RulesEngine.Hit> hits = new ArrayList<>();
+        StringBuilder code = new StringBuilder(32);
+        while ((i = stored.indexOf('"', i)) >= 0) {
+            code.setLength(0);
+            i = unescape(stored, i + 1, code);
+            hits.add(hit(code, rules));
+        }
+        return hits;
+    }
+
+    private static RulesEngine.Hit hit(CharSequence code, CompiledRuleSet rules) {
+        String s = code.toString();
+        int c1 = s.indexOf(':');
+        int c2 = s.indexOf(':', c1 + 1);
+        if (c1 < 0) throw new IllegalArgumentException("bad reason code: " + s);
+        String name = s.substring(0, c1);
+        int weight = Integer.parseInt(c2 < 0 ? s.substring(c1 + 1) : s.substring(c1 + 1, c2));
+        String arg = c2 < 0 ? null : s.substring(c2 + 1);
+        String reason = rules.reason(name, arg);
+        if (reason == null) reason = builtin(name);
+        if (reason == null) reason = arg == null ? name : name + ": " + arg; // rule since removed
+        return new RulesEngine.Hit(name, weight, reason, arg);
+    }
+
+    private static String builtin(String name) {
+        for (RulesEngine.Hit h : BUILTINS) if (h.name.equals(name)) return h.reason;
+        return null;
+    }
+
+    private static List<RulesEngine.Hit> decodeLegacy(String json) {
+        try {
+            List<RulesEngine.Hit> hits = new ArrayList<>();
+            for (JsonNode n : LEGACY.readTree(json)) {
+                hits.add(new RulesEngine.Hit(n.path("name").asText(), n.path("weight").asInt(), n.path("reason").asText()));
+            }
+            return hits;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void escape(StringBuilder sb, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+    }
+
+    /** Read a JSON string body starting at {@code i} (after the quote); returns the index past its end quote. */
+    private static int unescape(String s, int i, StringBuilder out) {
+        while (true) {
+            char c = s.charAt(i++);
+            if (c == '"') return i;
+            if (c != '\\') { out.append(c); continue; }
+            char e = s.charAt(i++);
+            switch (e) {
+                case 'u' -> { out.append((char) Integer.parseInt(s, i, i + 4, 16)); i += 4; }
+                case 'n' -> out.append('\n');
+                case 't' -> out.append('\t');
+                case 'r' -> out.append('\r');
+                case 'b' -> out.append('\b');
+                case 'f' -> out.append('\f');
+                default -> out.append(e); // \" \\ \/
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.weblinkshield.core.rules;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * External, versioned rule definition (JSON), e.g. classpath:rules/default-rules.json.
+ * Only describes the rules; {@link CompiledRuleSet#compile} validates it and builds the evaluator.
+ *
+ * Rule fields:
+ *  - feature: url_length, digit_count, slash_count, has_at, has_login (URL string) or
+ *             host_intel, risky_tld, tls_age_days, domain_age_days, has_ip (host intel)
+ *  - riskyTlds: public suffixes ("tk", "github.io"); a TLD entry also covers suffixes under it
+ *  - op:      gt, ge, lt, le, eq (against value), true, false, missing
+ *  - reason:  shown in explain output; "{tld}" is replaced by the host's TLD
+ * Intel features never fire when intel is unavailable; host_intel is "missing" exactly then.
+ * The same holds per probe: tls_age_days and has_ip never fire when the TLS / DNS probe was
+ * cut off by the intel budget (only a probe that finished empty-handed makes them "missing" / 0).
+ *
+ * Keyword groups are matched together in one pass over host and path ({@link KeywordMatcher}).
+ * Every distinct term found scores the group's weight once, up to maxHits terms per group:
+ *  - scope:  url (host and path, default), host, path, or outside_domain (host and path,
+ *            except on the registrable domains listed for the term in owners, i.e. the brand's
+ *            own sites; "paypal-verify.com" counts, "www.paypal.com" does not)
+ *  - match:  substring (default), or token: only whole tokens between non-alphanumerics, so
+ *            "apple" matches "apple-id.example" but not "pineapple.com"
+ *  - owners: term -> registrable domains it is exempt on (outside_domain only)
+ *  - reason: "{term}" is replaced by the matched term
+ */
+public record RuleSet(String version, Thresholds thresholds, List<String> riskyTlds, List<Rule> rules,
+                      List<KeywordGroup> keywordGroups) {
+
+    /** Minimum score for each verdict band. */
+    public record Thresholds(int malicious, int suspicious) {}
+
+    public record Rule(String name, int weight, String feature, String op, Long value, String reason) {}
+
+    public record KeywordGroup(String name, int weight, String scope, String match, Integer maxHits, String reason,
+                               List<String> terms, Map<String, List<String>> owners) {}
+
+    private static final ObjectMapper OM = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+
+    public static RuleSet read(InputStream in) throws IOException {
+        return OM.readValue(in, RuleSet.class);
+    }
+}
@@ -0,0 +1,86 @@
+package org.weblinkshield.core.rules;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the rule set from weblinkshield.rules.location into the {@link RulesEngine} at startup
+ * and, when the location is a file, re-reads it whenever it changes (checked every
+ * reload-interval). A new set is compiled off to the side and swapped in atomically; one that
+ * fails to parse or validate is logged and the current set stays active.
+ */
+@Component
+public class RuleSetLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(RuleSetLoader.class);
+
+    private final RulesEngine engine;
+    private final Resource resource;
+    private final ScheduledExecutorService watcher =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("rules-reload").factory());
+    private long lastModified;
+
+    public RuleSetLoader(RulesEngine engine,
+                         ResourceLoader resources,
+                         @Value("${weblinkshield.rules.location:classpath:" + CompiledRuleSet.DEFAULT_LOCATION + "}") String location,
+                         @Value("${weblinkshield.rules.reload-interval:30s}") Duration reloadInterval) {
+        this.engine = engine;
+        this.resource = resources.getResource(location);
+        // a broken configured rule set should stop startup, not fall back silently
+        this.lastModified = modified();
+        load();
+        if (resource.isFile() && !reloadInterval.isZero()) {
+            long every = reloadInterval.toMillis();
+            watcher.scheduleWithFixedDelay(this::reloadIfChanged, every, every, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() { watcher.shutdownNow(); }
+
+    /** Re-read the rule set now, whether or not the file changed. */
+    public synchronized CompiledRuleSet load() {
+        CompiledRuleSet next;
+        try (InputStream in = resource.getInputStream()) {
+            next = CompiledRuleSet.compile(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read rule set " + resource.getDescription(), e);
+        }
+        CompiledRuleSet prev = engine.ruleSet();
+        engine.swap(next);
+        log.info("rule set {} active ({} rules, from {}, was {})",
+                next.version(), next.size(), resource.getDescription(), prev.version());
+        return next;
+    }
+
+    private synchronized void reloadIfChanged() {
+        long m = modified();
+        if (m == lastModified) return;
+        lastModified = m;
+        try {
+            load();
+        } catch (RuntimeException e) {
+            log.warn("rule set reload failed, keeping {}: {}", engine.ruleSet().version(), e.getMessage());
+        }
+    }
+
+    private long modified() {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -1,27 +1,66 @@
 package org.weblinkshield.core.rules;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
 import org.weblinkshield.data.entity.HostIntel;
+import org.weblinkshield.data.entity.Verdict;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Minimal, explainable rule-based scorer.
  * Returns an integer score; higher = riskier.
- * Caller decides thresholds for safe/suspicious/malicious.
+ * Rules and safe/suspicious/malicious thresholds come from a {@link CompiledRuleSet}
+ * (bundled defaults until {@link RuleSetLoader} swaps in the configured one).
+ *
+ * Once bound to a registry, {@link #score} is timed as weblinkshield.rules.evaluation and every
+ * hit counted as weblinkshield.rules.hits{rule=...}; the hit-less fast paths stay unmetered.
  */
-public class RulesEngine {
+@Component
+public class RulesEngine implements MeterBinder {
 
-    /** Single rule hit detail (for explain UI) */
+    private volatile CompiledRuleSet active;
+
+    private volatile MeterRegistry registry;
+    private volatile Timer evaluation;
+    private final Map<String, Counter> hitCounters = new ConcurrentHashMap<>();
+
+    public RulesEngine() { this(CompiledRuleSet.defaults()); }
+
+    public RulesEngine(CompiledRuleSet ruleSet) { this.active = Objects.requireNonNull(ruleSet); }
+
+    /**
+     * Single rule hit detail (for explain UI). {@code arg} is what was substituted into the
+     * rule's reason template ({tld} or {term}); it is stored instead of the reason text, see
+     * {@link ReasonCodec}.
+     */
     public static class Hit {
         public final String name;
         public final int weight;
         public final String reason;
+        @JsonIgnore public final String arg;
         public Hit(String name, int weight, String reason) {
-            this.name = name; this.weight = weight; this.reason = reason;
+            this(name, weight, reason, null);
+        }
+        public Hit(String name, int weight, String reason, String arg) {
+            this.name = name; this.weight = weight; this.reason = reason; this.arg = arg;
         }
     }
 
+    /** Built-in hits that do not come from a rule set. */
+    public static final Hit INVALID_URL = new Hit("invalid_url", 50, "URL missing or blank");
+    public static final Hit BLOCKLISTED = new Hit("blocklisted", 100, "URL or domain is on the blocklist");
+    public static final Hit ALLOWLISTED = new Hit("allowlisted", 0, "Domain is on the allowlist");
+
     /** Helper to create a fresh, mutable hits list. */
     public List<Hit> newHits() { return new ArrayList<>(); }
 
@@ -33,91 +72,76 @@ public class RulesEngine {
      * @return total score
      */
     public int score(String canon, HostIntel hi, List<Hit> hits) {
-        int s = 0;
-
-        // ----------------------------
-        // URL string heuristics
-        // ----------------------------
         if (canon == null || canon.isBlank()) {
-            hits.add(new Hit("invalid_url", 50, "URL missing or blank"));
+            hits.add(INVALID_URL);
             return 50;
         }
+        Timer timer = evaluation;
+        if (timer == null) return evaluate(new UrlFeatures().extract(canon), hi, hits);
+
+        long start = System.nanoTime();
+        int from = hits.size();
+        int score = evaluate(new UrlFeatures().extract(canon), hi, hits);
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        for (int i = from; i < hits.size(); i++) hitCounter(hits.get(i).name).increment();
+        return score;
+    }
 
-        // Length
-        if (canon.length() > 120) { s += add(hits, "long_url", 15, "URL length > 120"); }
-        if (canon.length() > 200) { s += add(hits, "very_long_url", 10, "URL length > 200"); }
-
-        // Digits
-        long digitCount = canon.chars().filter(Character::isDigit).count();
-        if (digitCount > 20)      { s += add(hits, "many_digits", 10, "Digit count > 20"); }
-        if (digitCount > 40)      { s += add(hits, "very_many_digits", 10, "Digit count > 40"); }
-
-        // Special characters / patterns commonly seen in phishing
-        if (canon.contains("@"))  { s += add(hits, "at_symbol", 20, "'@' symbol present"); }
-        if (canon.toLowerCase().contains("login")) { s += add(hits, "login_keyword", 5, "Contains 'login' keyword"); }
-
-        // Path depth
-        long slashes = canon.chars().filter(c -> c == '/').count();
-        if (slashes > 8)          { s += add(hits, "many_paths", 10, "Many path segments"); }
-
-        // ----------------------------
-        // Host intel (may be null)
-        // ----------------------------
-        if (hi != null) {
-            // Risky/free TLDs (example set; tune as you wish)
-            String tld = safeLower(hi.getTld());
-            if (tld != null && isRiskyTld(tld)) {
-                s += add(hits, "risky_tld", 20, "High-risk/free TLD: " + tld);
-            }
-
-            // TLS presence & age
-            Integer tlsAge = hi.getTlsAgeDays();
-            if (tlsAge == null) {
-                s += add(hits, "no_tls", 25, "No TLS certificate observed");
-            } else {
-                if (tlsAge < 30)      { s += add(hits, "young_tls", 10, "TLS cert age < 30 days"); }
-                if (tlsAge < 7)       { s += add(hits, "very_young_tls", 10, "TLS cert age < 7 days"); }
-            }
-
-            // Domain age (when you implement WHOIS later)
-            Integer domAge = hi.getDomainAgeDays();
-            if (domAge != null) {
-                if (domAge < 30)      { s += add(hits, "young_domain", 15, "Domain age < 30 days"); }
-                if (domAge < 7)       { s += add(hits, "very_young_domain", 10, "Domain age < 7 days"); }
-            }
-
-            // Missing IP resolution
-            if (hi.getIp() == null || hi.getIp().isBlank()) {
-                s += add(hits, "no_dns", 10, "No A/AAAA record resolved");
-            }
-        } else {
-            // No intel (network blocked or collector disabled)
-            s += add(hits, "no_host_intel", 5, "Host intel unavailable");
-        }
+    /**
+     * Score-only fast path: same total as {@link #score} but builds no hits and no reason
+     * strings. With a reused {@code scratch} vector it allocates nothing per URL.
+     */
+    public int scoreOnly(CharSequence canon, HostIntel hi, UrlFeatures scratch) {
+        if (canon == null || isBlank(canon)) return 50;
+        return evaluate(scratch.extract(canon), hi, null);
+    }
+
+    /**
+     * Verdict band only, for callers that never show reasons: may stop before evaluating every
+     * rule once the band is settled.
+     */
+    public Verdict.Status classify(CharSequence canon, HostIntel hi, UrlFeatures scratch) {
+        CompiledRuleSet rs = active;
+        if (canon == null || isBlank(canon)) return rs.statusFor(50);
+        return rs.classify(scratch.extract(canon), hi);
+    }
 
-        return s;
+    /** Verdict band for a score under the active rule set's thresholds. */
+    public Verdict.Status statusFor(int score) {
+        return active.statusFor(score);
     }
 
-    // ----------------------------
-    // Helpers
-    // ----------------------------
+    public CompiledRuleSet ruleSet() { return active; }
 
-    private static int add(List<Hit> hits, String name, int weight, String reason) {
-        hits.add(new Hit(name, weight, reason));
-        return weight;
+    /** Atomically switch to another rule set; calls already evaluating finish on the old one. */
+    public void swap(CompiledRuleSet next) {
+        this.active = Objects.requireNonNull(next);
     }
 
-    private static String safeLower(String s) {
-        return (s == null) ? null : s.toLowerCase();
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        this.evaluation = Timer.builder("weblinkshield.rules.evaluation")
+                .description("Feature extraction + rule evaluation for one URL, with reasons")
+                .publishPercentileHistogram()
+                .register(registry);
     }
 
-    private static boolean isRiskyTld(String tld) {
-        // Curated starter list; expand/tune as needed
-        return switch (tld) {
-            case "tk", "ml", "ga", "cf", "gq",   // Freenom legacy
-                 "top", "xyz", "work", "click", "country",
-                 "zip", "review", "loan", "kim", "men", "party" -> true;
-            default -> false;
-        };
+    private Counter hitCounter(String rule) {
+        return hitCounters.computeIfAbsent(rule, r -> Counter.builder("weblinkshield.rules.hits")
+                .description("URLs matched by each rule / keyword group")
+                .tag("rule", r)
+                .register(registry));
+    }
+
+    private int evaluate(UrlFeatures f, HostIntel hi, List<Hit> hits) {
+        return active.evaluate(f, hi, hits);
+    }
+
+    private static boolean isBlank(CharSequence cs) {
+        for (int i = 0; i < cs.length(); i++) {
+            if (!Character.isWhitespace(cs.charAt(i))) return false;
+        }
+        return true;
     }
 }
@@ -0,0 +1,53 @@
+package org.weblinkshield.core.rules;
+
+/**
+ * Primitive feature vector for the URL string heuristics, filled in a single pass over the
+ * characters. Instances are reusable: {@link #extract} overwrites every field, so a caller
+ * scoring many URLs (proxy pre-filter, benchmarks) can keep one per thread and allocate nothing.
+ */
+public final class UrlFeatures {
+
+    private static final char[] LOGIN = {'l', 'o', 'g', 'i', 'n'};
+
+    public int length;
+    public int digits;
+    public int slashes;
+    public boolean hasAt;
+    public boolean hasLogin;   // case-insensitive "login"
+
+    CharSequence url;                         // input of the last extract()
+    CompiledRuleSet.KeywordScan keywordScan;  // keyword match buffers, reused across URLs
+
+    /** Overwrite this vector with the features of {@code url}; returns this. */
+    public UrlFeatures extract(CharSequence url) {
+        int len = url.length();
+        int digits = 0, slashes = 0, login = 0;
+        boolean at = false, hasLogin = false;
+
+        for (int i = 0; i < len; i++) {
+            char c = url.charAt(i);
+            if (c >= '0' && c <= '9') digits++;
+            else if (c == '/') slashes++;
+            else if (c == '@') at = true;
+            else if (c >= 0x80 && Character.isDigit(c)) digits++; // non-ASCII digits, as before
+
+            // "login" has no self-overlap, so on a mismatch only a fresh 'l' can restart it
+            if (!hasLogin) {
+                char lc = (c >= 'A' && c <= 'Z') ? (char) (c + 32) : c;
+                if (lc == LOGIN[login]) {
+                    if (++login == LOGIN.length) hasLogin = true;
+                } else {
+                    login = (lc == 'l') ? 1 : 0;
+                }
+            }
+        }
+
+        this.url = url;
+        this.length = len;
+        this.digits = digits;
+        this.slashes = slashes;
+        this.hasAt = at;
+        this.hasLogin = hasLogin;
+        return this;
+    }
+}
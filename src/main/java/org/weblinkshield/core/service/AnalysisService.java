@@ -1,115 +1,336 @@
 package org.weblinkshield.core.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import org.weblinkshield.core.intel.IntelCollector;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.weblinkshield.core.intel.HostIntelService;
+import org.weblinkshield.core.limit.Bulkhead;
 import org.weblinkshield.core.normalize.UrlNormalizer;
+import org.weblinkshield.core.reputation.ReputationService;
+import org.weblinkshield.core.rules.ReasonCodec;
 import org.weblinkshield.core.rules.RulesEngine;
 import org.weblinkshield.data.entity.HostIntel;
 import org.weblinkshield.data.entity.Url;
 import org.weblinkshield.data.entity.Verdict;
-import org.weblinkshield.data.repo.HostIntelRepo;
 import org.weblinkshield.data.repo.UrlRepo;
+import org.weblinkshield.data.repo.UrlVerdictJdbcRepo;
 import org.weblinkshield.data.repo.VerdictRepo;
 
-import java.net.URI;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class AnalysisService {
 
     private final UrlRepo urlRepo;
     private final VerdictRepo verdictRepo;
-    private final HostIntelRepo hostIntelRepo;
-    private final IntelCollector intelCollector;
+    private final UrlVerdictJdbcRepo batchRepo;
+    private final HostIntelService hostIntel;
+    private final ReputationService reputation;
+    private final VerdictCache verdictCache;
+    private final VerdictWriteBehind writeBehind; // null unless weblinkshield.persistence.mode=write-behind
+    private final UrlHashBackfill backfill;       // null once weblinkshield.url-hash.backfill is disabled
+    private final TransactionTemplate writeTx;
+    private final Bulkhead db;
 
-    private final RulesEngine rules = new RulesEngine();
-    private final ObjectMapper om = new ObjectMapper();
+    private final Timer phaseRead;
+    private final Timer phaseNetwork;
+    private final Timer phaseScore;
+    private final Timer phaseWrite;
+    private final Timer stepCanonicalize;
+    private final Timer stepLists;
+    private final Timer stepSerialize;
+    private final Timer batchRead;
+    private final Timer batchNetwork;
+    private final Timer batchScore;
+    private final Timer batchWrite;
+    private final Counter[][] verdicts; // [listing][status]
+
+    private final RulesEngine rules;
 
     // Constructor injection for all dependencies
     public AnalysisService(UrlRepo urlRepo,
                            VerdictRepo verdictRepo,
-                           HostIntelRepo hostIntelRepo,
-                           IntelCollector intelCollector) {
+                           UrlVerdictJdbcRepo batchRepo,
+                           HostIntelService hostIntel,
+                           ReputationService reputation,
+                           VerdictCache verdictCache,
+                           ObjectProvider<VerdictWriteBehind> writeBehind,
+                           ObjectProvider<UrlHashBackfill> backfill,
+                           RulesEngine rules,
+                           TransactionTemplate writeTx,
+                           @Qualifier("dbBulkhead") Bulkhead db,
+                           MeterRegistry registry) {
         this.urlRepo = urlRepo;
         this.verdictRepo = verdictRepo;
-        this.hostIntelRepo = hostIntelRepo;
-        this.intelCollector = intelCollector;
+        this.batchRepo = batchRepo;
+        this.hostIntel = hostIntel;
+        this.reputation = reputation;
+        this.verdictCache = verdictCache;
+        this.writeBehind = writeBehind.getIfAvailable();
+        this.backfill = backfill.getIfAvailable();
+        this.rules = rules;
+        this.writeTx = writeTx;
+        this.db = db;
+        this.phaseRead = phaseTimer(registry, "read");
+        this.phaseNetwork = phaseTimer(registry, "network");
+        this.phaseScore = phaseTimer(registry, "score");
+        this.phaseWrite = phaseTimer(registry, "write");
+        this.stepCanonicalize = stepTimer(registry, "canonicalize");
+        this.stepLists = stepTimer(registry, "lists");
+        this.stepSerialize = stepTimer(registry, "serialize");
+        this.batchRead = batchPhaseTimer(registry, "read");
+        this.batchNetwork = batchPhaseTimer(registry, "network");
+        this.batchScore = batchPhaseTimer(registry, "score");
+        this.batchWrite = batchPhaseTimer(registry, "write");
+
+        ReputationService.Listing[] listings = ReputationService.Listing.values();
+        Verdict.Status[] statuses = Verdict.Status.values();
+        this.verdicts = new Counter[listings.length][statuses.length];
+        for (ReputationService.Listing l : listings) {
+            for (Verdict.Status st : statuses) {
+                verdicts[l.ordinal()][st.ordinal()] = Counter.builder("weblinkshield.analysis.verdicts")
+                        .description("Verdicts issued, by verdict and what decided it")
+                        .tag("verdict", st.name())
+                        .tag("source", switch (l) {
+                            case NONE -> "rules";
+                            case BLOCKED -> "blocklist";
+                            case ALLOWED -> "allowlist";
+                        })
+                        .register(registry);
+            }
+        }
+    }
+
+    private static Timer phaseTimer(MeterRegistry registry, String phase) {
+        return Timer.builder("weblinkshield.analysis.phase")
+                .description("Time spent in each analyze phase; 'write' is the DB connection hold time")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Timer stepTimer(MeterRegistry registry, String step) {
+        return Timer.builder("weblinkshield.analysis.step")
+                .description("CPU-only steps inside the analyze phases")
+                .tag("step", step)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Timer batchPhaseTimer(MeterRegistry registry, String phase) {
+        return Timer.builder("weblinkshield.analysis.batch.phase")
+                .description("Time spent in each analyzeBatch phase, per batch")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(registry);
     }
 
-    @Transactional
-    public Map<String, Object> analyze(String rawUrl) throws Exception {
+    /**
+     * Analysis runs in phases so no pooled connection is held across network I/O:
+     *  1) read    - canonicalize, extract the host and check the block/allow lists
+     *  2) network - host intel from cache or one auto-commit query; DNS/TLS collection only
+     *               when it is missing or stale, with no transaction open (skipped for listed URLs)
+     *  3) score   - rules, in memory (listed URLs get their list verdict instead)
+     *  4) write   - one short transaction for the url + verdict upserts, or in write-behind
+     *               mode a hand-off to {@link VerdictWriteBehind} (synchronous when it is full)
+     * Each phase is timed as weblinkshield.analysis.phase{phase=...}; the write phase is the
+     * only place analyze holds a connection (see also hikaricp.connections.usage).
+     * Finer steps are weblinkshield.analysis.step{step=canonicalize|lists|serialize}, rule
+     * evaluation is weblinkshield.rules.evaluation, individual queries are
+     * spring.data.repository.invocations, and every verdict is counted in
+     * weblinkshield.analysis.verdicts{verdict,source}.
+     */
+    public VerdictResponse analyze(String rawUrl) {
         // 1) Canonicalize URL (throws IllegalArgumentException if invalid)
+        long t0 = System.nanoTime();
         String canon = UrlNormalizer.canon(rawUrl);
+        String host = UrlNormalizer.host(canon);
+        long tCanon = System.nanoTime();
+        ReputationService.Listing listing = reputation.check(canon, host);
 
-        // 2) Upsert URL row
-        Url url = urlRepo.findByUrlCanon(canon).orElseGet(() -> {
-            Url u = new Url();
-            u.setUrlCanon(canon);
-            return urlRepo.save(u);
-        });
-
-        // 3) Collect / load host intel (simple strategy: create if missing)
-        String host = URI.create(canon).getHost();
-        HostIntel hi = hostIntelRepo.findById(url.getId()).orElseGet(() -> {
-            HostIntel h = intelCollector.collect(host);
-            h.setUrl(url); // bind FK
-            return hostIntelRepo.save(h);
-        });
-
-        // 4) Run rules (explainable hits)
+        // 2) Shared per-host intel (cached, collected at most once per freshness window)
+        long t1 = System.nanoTime();
+        HostIntel hi = (listing == ReputationService.Listing.NONE) ? hostIntel.lookup(host) : null;
+
+        // 3) Run rules (explainable hits)
+        long t2 = System.nanoTime();
         List<RulesEngine.Hit> hits = rules.newHits();
-        int score = rules.score(canon, hi, hits);   // <— uses HostIntel-aware rules
-
-        // 5) Upsert verdict
-        Verdict v = verdictRepo.findById(url.getId()).orElse(new Verdict());
-        v.setUrl(url);
-        v.setScore((double) score);
-        v.setReasonsJson(om.writeValueAsString(hits));
-
-        if (score >= 40) {
-            v.setVerdict(Verdict.Status.malicious);
-            v.setClazz(Verdict.ClassLabel.phishing);
-        } else if (score >= 20) {
-            v.setVerdict(Verdict.Status.suspicious);
-            v.setClazz(Verdict.ClassLabel.unknown);
-        } else {
-            v.setVerdict(Verdict.Status.safe);
-            v.setClazz(Verdict.ClassLabel.benign);
+        int score = (listing == ReputationService.Listing.NONE)
+                ? rules.score(canon, hi, hits)   // <— uses HostIntel-aware rules
+                : listedScore(listing, hits);
+        Verdict.Status status = statusFor(listing, score);
+        long tRules = System.nanoTime();
+        String reasonsJson = ReasonCodec.encode(hits);
+
+        // 4) Short write transaction: upsert URL row (pointing at the shared host) + verdict
+        long t3 = System.nanoTime();
+        UrlVerdictJdbcRepo.UrlVerdict row =
+                new UrlVerdictJdbcRepo.UrlVerdict(canon, hostId(hi), status, classFor(status), score, reasonsJson);
+        if (writeBehind == null || !writeBehind.offer(row)) {
+            db.run(() -> writeTx.executeWithoutResult(tx -> batchRepo.save(row)));
+        }
+        long t4 = System.nanoTime();
+
+        phaseRead.record(t1 - t0, TimeUnit.NANOSECONDS);
+        phaseNetwork.record(t2 - t1, TimeUnit.NANOSECONDS);
+        phaseScore.record(t3 - t2, TimeUnit.NANOSECONDS);
+        phaseWrite.record(t4 - t3, TimeUnit.NANOSECONDS);
+        stepCanonicalize.record(tCanon - t0, TimeUnit.NANOSECONDS);
+        stepLists.record(t1 - tCanon, TimeUnit.NANOSECONDS);
+        stepSerialize.record(t3 - tRules, TimeUnit.NANOSECONDS);
+        verdicts[listing.ordinal()][status.ordinal()].increment();
+
+        // 5) Response payload (replaces any cached verdict; the write has committed or is queued)
+        VerdictResponse response = new VerdictResponse(canon, score, hits, status, classFor(status));
+        verdictCache.replaceAfterCommit(canon, response);
+        return response;
+    }
+
+    private static Long hostId(HostIntel hi) {
+        return (hi == null) ? null : hi.getId(); // listed URLs have no intel
+    }
+
+    /**
+     * Bulk analyze (e.g. all links of one mail message). URLs are canonicalized and
+     * deduplicated, intel is resolved once per distinct host (in parallel), and all
+     * url/verdict rows are written with IN-list lookups and JDBC batches in one short
+     * transaction. Results come back in input order; invalid URLs get an "error" entry.
+     * Phases are timed per batch as weblinkshield.analysis.batch.phase{phase=...}.
+     */
+    public List<VerdictResponse> analyzeBatch(List<String> rawUrls) {
+        // 1) Canonicalize + dedupe
+        long t0 = System.nanoTime();
+        List<String> canonByIndex = new ArrayList<>(rawUrls.size());
+        Map<String, String> hostByCanon = new LinkedHashMap<>();
+        Map<String, ReputationService.Listing> listed = new HashMap<>();
+        for (String raw : rawUrls) {
+            String canon;
+            try {
+                canon = UrlNormalizer.canon(raw);
+                if (!hostByCanon.containsKey(canon)) {
+                    String host = UrlNormalizer.host(canon);
+                    hostByCanon.put(canon, host);
+                    ReputationService.Listing listing = reputation.check(canon, host);
+                    if (listing != ReputationService.Listing.NONE) listed.put(canon, listing);
+                }
+            } catch (IllegalArgumentException e) {
+                canon = null; // reported as an error entry
+            }
+            canonByIndex.add(canon);
         }
 
-        verdictRepo.save(v);
+        // 2) Intel once per distinct host (listed URLs need none)
+        long t1 = System.nanoTime();
+        Set<String> hosts = new HashSet<>();
+        hostByCanon.forEach((canon, host) -> { if (!listed.containsKey(canon)) hosts.add(host); });
+        Map<String, HostIntel> intel = hostIntel.lookupAll(hosts);
 
-        // 6) Response payload
-        return Map.of(
-                "url", canon,
-                "verdict", v.getVerdict().name(),
-                "class", v.getClazz().name(),
-                "score", v.getScore(),
-                "reasons", om.readTree(v.getReasonsJson())
-        );
+        // 3) Score every distinct URL
+        long t2 = System.nanoTime();
+        List<UrlVerdictJdbcRepo.UrlVerdict> scored = new ArrayList<>(hostByCanon.size());
+        Map<String, VerdictResponse> responses = new HashMap<>();
+        for (var e : hostByCanon.entrySet()) {
+            String canon = e.getKey();
+            ReputationService.Listing listing = listed.getOrDefault(canon, ReputationService.Listing.NONE);
+            List<RulesEngine.Hit> hits = rules.newHits();
+            HostIntel hi = intel.get(e.getValue());
+            int score = (listing == ReputationService.Listing.NONE)
+                    ? rules.score(canon, hi, hits)
+                    : listedScore(listing, hits);
+            Verdict.Status status = statusFor(listing, score);
+            verdicts[listing.ordinal()][status.ordinal()].increment();
+            scored.add(new UrlVerdictJdbcRepo.UrlVerdict(canon, hostId(hi), status, classFor(status), score,
+                    ReasonCodec.encode(hits)));
+            responses.put(canon, new VerdictResponse(canon, score, hits, status, classFor(status)));
+        }
+
+        // 4) One short write transaction for the whole batch (write-behind: only what it refused)
+        long t3 = System.nanoTime();
+        List<UrlVerdictJdbcRepo.UrlVerdict> toWrite = scored;
+        if (writeBehind != null) {
+            toWrite = new ArrayList<>();
+            for (UrlVerdictJdbcRepo.UrlVerdict row : scored) {
+                if (!writeBehind.offer(row)) toWrite.add(row);
+            }
+        }
+        if (!toWrite.isEmpty()) {
+            List<UrlVerdictJdbcRepo.UrlVerdict> rows = toWrite;
+            db.run(() -> writeTx.executeWithoutResult(tx -> batchRepo.saveAll(rows)));
+        }
+        responses.forEach(verdictCache::replaceAfterCommit);
+        long t4 = System.nanoTime();
+        batchRead.record(t1 - t0, TimeUnit.NANOSECONDS);
+        batchNetwork.record(t2 - t1, TimeUnit.NANOSECONDS);
+        batchScore.record(t3 - t2, TimeUnit.NANOSECONDS);
+        batchWrite.record(t4 - t3, TimeUnit.NANOSECONDS);
+
+        List<VerdictResponse> out = new ArrayList<>(rawUrls.size());
+        for (int i = 0; i < rawUrls.size(); i++) {
+            String canon = canonByIndex.get(i);
+            out.add(canon != null
+                    ? responses.get(canon)
+                    : VerdictResponse.error(String.valueOf(rawUrls.get(i)), "Invalid URL"));
+        }
+        return out;
+    }
+
+    /** Score of a block/allow-listed URL: one explanatory hit instead of the rules. */
+    private static int listedScore(ReputationService.Listing listing, List<RulesEngine.Hit> hits) {
+        if (listing == ReputationService.Listing.BLOCKED) {
+            hits.add(RulesEngine.BLOCKLISTED);
+            return 100;
+        }
+        hits.add(RulesEngine.ALLOWLISTED);
+        return 0;
+    }
+
+    private Verdict.Status statusFor(ReputationService.Listing listing, int score) {
+        return switch (listing) {
+            case BLOCKED -> Verdict.Status.malicious;
+            case ALLOWED -> Verdict.Status.safe;
+            case NONE -> rules.statusFor(score);
+        };
+    }
+
+    private static Verdict.ClassLabel classFor(Verdict.Status status) {
+        return switch (status) {
+            case malicious -> Verdict.ClassLabel.phishing;
+            case safe -> Verdict.ClassLabel.benign;
+            default -> Verdict.ClassLabel.unknown;
+        };
     }
 
     @Transactional(Transactional.TxType.SUPPORTS)
-    public Optional<Map<String, Object>> getVerdict(String rawUrl) throws Exception {
+    public Optional<VerdictResponse> getVerdict(String rawUrl) {
         String canon = UrlNormalizer.canon(rawUrl);
-        return urlRepo.findByUrlCanon(canon).flatMap(u ->
-                verdictRepo.findById(u.getId()).map(v -> {
-                    try {
-                        return Map.of(
-                                "url", v.getUrl().getUrlCanon(),
-                                "verdict", v.getVerdict().name(),
-                                "class", v.getClazz().name(),
-                                "score", v.getScore(),
-                                "reasons", om.readTree(v.getReasonsJson())
-                        );
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                })
-        );
+        VerdictResponse cached = verdictCache.get(canon);
+        if (cached != null) return Optional.of(cached);
+        UrlVerdictJdbcRepo.UrlVerdict queued = (writeBehind == null) ? null : writeBehind.pending(canon);
+        if (queued != null) {
+            return Optional.of(new VerdictResponse(canon, queued.score(),
+                    ReasonCodec.decode(queued.reasonsJson(), rules.ruleSet()), queued.verdict(), queued.clazz()));
+        }
+
+        long stamp = verdictCache.stamp(); // before the read: a verdict published meanwhile wins
+        Optional<VerdictResponse> loaded = db.call(() -> findUrl(canon).flatMap(u ->
+                verdictRepo.findById(u.getId()).map(v -> new VerdictResponse(u.getUrlCanon(), v.getScore(),
+                        ReasonCodec.decode(v.getReasonsJson(), rules.ruleSet()), v.getVerdict(), v.getClazz()))));
+        loaded.ifPresent(r -> verdictCache.fill(canon, r, stamp));
+        return loaded;
+    }
+
+    /** The url row of a canon by its hash; until the backfill completes, also a row still without one. */
+    private Optional<Url> findUrl(String canon) {
+        Optional<Url> url = urlRepo.findByCanon(canon);
+        if (url.isEmpty() && backfill != null && !backfill.isComplete()) {
+            url = urlRepo.findFirstByUrlHashIsNullAndUrlCanon(canon);
+        }
+        return url;
     }
 }
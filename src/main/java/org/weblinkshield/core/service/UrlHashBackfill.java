@@ -0,0 +1,119 @@
+package org.weblinkshield.core.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.weblinkshield.core.limit.Bulkhead;
+import org.weblinkshield.data.repo.UrlVerdictJdbcRepo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills url.url_hash for rows written without one: rows from before the column existed, and
+ * rows inserted by not-yet-upgraded nodes during a rolling deploy. Until hashed, such rows are
+ * invisible to hash lookups, so the first analyze of their URL inserts a hashed duplicate; the
+ * backfill then deletes the unhashed copy (and its verdict) instead of hashing it.
+ *
+ * Works batch-size rows at a time under the db bulkhead, pause apart, and stops once a batch
+ * comes back empty. Batches are claimed with SELECT ... FOR UPDATE SKIP LOCKED, so nodes running
+ * it at the same time work on disjoint rows instead of racing on the same ones. Rows that
+ * not-yet-upgraded nodes write after it stopped are picked up the next time a node starts.
+ * Until it completes, {@link AnalysisService#getVerdict} also looks unhashed rows up by canon.
+ * Disable it after db/url_hash.sql has made the column NOT NULL.
+ */
+@Component
+@ConditionalOnProperty(name = "weblinkshield.url-hash.backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class UrlHashBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(UrlHashBackfill.class);
+
+    private final UrlVerdictJdbcRepo repo;
+    private final TransactionTemplate writeTx;
+    private final Bulkhead db;
+    private final int batchSize;
+    private final Duration pause;
+    private final Counter hashed;
+    private final Counter merged;
+    private volatile boolean complete;
+    private final ScheduledExecutorService worker =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("url-hash-backfill").factory());
+
+    public UrlHashBackfill(UrlVerdictJdbcRepo repo,
+                           TransactionTemplate writeTx,
+                           @Qualifier("dbBulkhead") Bulkhead db,
+                           MeterRegistry registry,
+                           @Value("${weblinkshield.url-hash.backfill.batch-size:1000}") int batchSize,
+                           @Value("${weblinkshield.url-hash.backfill.pause:100ms}") Duration pause) {
+        this.repo = repo;
+        this.writeTx = writeTx;
+        this.db = db;
+        this.batchSize = batchSize;
+        this.pause = pause;
+        this.hashed = backfillCounter(registry, "hashed");
+        this.merged = backfillCounter(registry, "merged");
+        worker.schedule(this::step, pause.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static Counter backfillCounter(MeterRegistry registry, String action) {
+        return Counter.builder("weblinkshield.url.hash.backfill")
+                .description("url rows handled by the url_hash backfill: hashed in place, "
+                        + "or merged (deleted as a duplicate of an already hashed row)")
+                .tag("action", action)
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() { worker.shutdownNow(); }
+
+    /** True once a batch has come back empty: no unhashed rows left (or all claimed by other nodes). */
+    public boolean isComplete() { return complete; }
+
+    private void step() {
+        try {
+            int n = db.call(() -> writeTx.execute(tx -> backfill(repo.findUnhashed(batchSize))));
+            if (n == 0) {
+                complete = true;
+                log.info("url_hash backfill complete ({} hashed, {} duplicates merged)",
+                        (long) hashed.count(), (long) merged.count());
+                worker.shutdown();
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("url_hash backfill batch failed, retrying: {}", e.toString());
+        }
+        if (!worker.isShutdown()) worker.schedule(this::step, pause.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /** Hash one batch of unhashed rows (id -> canon); returns the batch size. */
+    private int backfill(Map<Long, String> rows) {
+        if (rows.isEmpty()) return 0;
+        Set<String> taken = new HashSet<>(repo.findUrls(rows.values()).keySet());
+        Map<Long, String> toHash = new LinkedHashMap<>();
+        List<Long> duplicates = new ArrayList<>();
+        for (Map.Entry<Long, String> e : rows.entrySet()) {
+            if (taken.add(e.getValue())) toHash.put(e.getKey(), e.getValue());
+            else duplicates.add(e.getKey());
+        }
+        if (!duplicates.isEmpty()) repo.deleteUrls(duplicates);
+        if (!toHash.isEmpty()) repo.setHashes(toHash);
+        hashed.increment(toHash.size());
+        merged.increment(duplicates.size());
+        return rows.size();
+    }
+}
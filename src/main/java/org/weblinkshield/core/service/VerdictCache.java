@@ -0,0 +1,79 @@
+package org.weblinkshield.core.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, TTL-aware cache of fully built verdict responses keyed by canonical URL.
+ * Sits in front of the url/verdict lookups so hot URLs never touch the database.
+ * Hit/miss/eviction counters are published as "cache.*" meters tagged cache=verdicts.
+ *
+ * Every entry carries a stamp from one sequence: analyze results are stamped when they are
+ * published, read-through fills when their database read started. A fill never replaces an
+ * entry with a newer stamp, so a lookup that read the row just before a concurrent analyze
+ * committed cannot overwrite the fresh verdict for the rest of the TTL.
+ */
+@Component
+public class VerdictCache {
+
+    private record Entry(VerdictResponse response, long stamp) {}
+
+    private final Cache<String, Entry> cache;
+    private final AtomicLong stamps = new AtomicLong();
+
+    public VerdictCache(MeterRegistry registry,
+                        @Value("${weblinkshield.verdict-cache.max-size:10000}") long maxSize,
+                        @Value("${weblinkshield.verdict-cache.ttl:10m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "verdicts");
+    }
+
+    public VerdictResponse get(String canon) {
+        Entry e = cache.getIfPresent(canon);
+        return (e == null) ? null : e.response();
+    }
+
+    /** Stamp to take before reading a verdict from the database; pass it to {@link #fill}. */
+    public long stamp() { return stamps.incrementAndGet(); }
+
+    /** Cache a verdict read from the database, unless an entry newer than the read is already there. */
+    public void fill(String canon, VerdictResponse response, long stamp) {
+        cache.asMap().merge(canon, new Entry(response, stamp),
+                (cur, fill) -> cur.stamp() > fill.stamp() ? cur : fill);
+    }
+
+    public void invalidate(String canon) { cache.invalidate(canon); }
+
+    /**
+     * Publish a new response once the surrounding transaction commits (immediately when no
+     * transaction is active), so a rolled-back write never becomes visible through the cache.
+     * Until then the current entry, which is still what the database holds, keeps being served.
+     */
+    public void replaceAfterCommit(String canon, VerdictResponse response) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(canon, response);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() { publish(canon, response); }
+        });
+    }
+
+    private void publish(String canon, VerdictResponse response) {
+        cache.put(canon, new Entry(response, stamp()));
+    }
+}
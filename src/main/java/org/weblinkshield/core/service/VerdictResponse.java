@@ -0,0 +1,33 @@
+package org.weblinkshield.core.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import org.weblinkshield.core.rules.RulesEngine;
+import org.weblinkshield.data.entity.Verdict;
+
+import java.util.List;
+
+/**
+ * Verdict as returned by analyze / verdict lookups and cached in {@link VerdictCache}; immutable,
+ * so a cached instance is serialized straight onto the response. Batch entries for URLs that
+ * failed to parse carry only url and error.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"url", "score", "reasons", "verdict", "class", "error"})
+public record VerdictResponse(String url,
+                              Double score,
+                              List<RulesEngine.Hit> reasons,
+                              Verdict.Status verdict,
+                              @JsonProperty("class") Verdict.ClassLabel clazz,
+                              String error) {
+
+    public VerdictResponse(String url, double score, List<RulesEngine.Hit> reasons,
+                           Verdict.Status verdict, Verdict.ClassLabel clazz) {
+        this(url, score, List.copyOf(reasons), verdict, clazz, null);
+    }
+
+    public static VerdictResponse error(String url, String error) {
+        return new VerdictResponse(url, null, null, null, null, error);
+    }
+}
@@ -0,0 +1,279 @@
+package org.weblinkshield.core.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.weblinkshield.core.limit.Bulkhead;
+import org.weblinkshield.data.repo.UrlVerdictJdbcRepo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind persistence for url + verdict rows (weblinkshield.persistence.mode=write-behind).
+ *
+ * analyze hands its rows here and returns without touching the database. Pending rows are
+ * keyed by canonical URL, so a URL analyzed again before the next flush only keeps its latest
+ * verdict, and flushed in batches of batch-size through {@link UrlVerdictJdbcRepo#saveAll},
+ * every flush-interval or as soon as a full batch is waiting.
+ *
+ * Back-pressure: at capacity pending URLs, {@link #offer} waits up to offer-timeout for room and
+ * then refuses, and the caller writes synchronously itself, so a slow database slows analyze
+ * down instead of growing the queue. A failed flush puts its rows back (unless newer ones arrived)
+ * and is retried on the next tick.
+ *
+ * Shutdown: as a {@link SmartLifecycle} in a phase below the web server's, this stops after
+ * the server has stopped taking requests and before the DataSource closes, and flushes until
+ * empty or drain-timeout. Rows still pending after a hard kill are lost; they are verdicts,
+ * recomputed on the next analyze of the URL.
+ *
+ * Metrics: weblinkshield.writebehind.{pending, coalesced, flushed, refused, failures, flush, lag}.
+ */
+@Component
+@ConditionalOnProperty(name = "weblinkshield.persistence.mode", havingValue = "write-behind")
+public class VerdictWriteBehind implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(VerdictWriteBehind.class);
+
+    private record Pending(UrlVerdictJdbcRepo.UrlVerdict row, long queuedAt) {}
+
+    private final UrlVerdictJdbcRepo repo;
+    private final TransactionTemplate writeTx;
+    private final Bulkhead db;
+    private final int capacity;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration offerTimeout;
+    private final Duration drainTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean running;
+
+    private final ScheduledExecutorService flusher =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("verdict-write-behind").factory());
+
+    private final Counter coalesced;
+    private final Counter flushed;
+    private final Counter refused;
+    private final Counter failures;
+    private final Timer flushTimer;
+    private final Timer lag;
+
+    public VerdictWriteBehind(UrlVerdictJdbcRepo repo,
+                              TransactionTemplate writeTx,
+                              @Qualifier("dbBulkhead") Bulkhead db,
+                              MeterRegistry registry,
+                              @Value("${weblinkshield.persistence.write-behind.capacity:10000}") int capacity,
+                              @Value("${weblinkshield.persistence.write-behind.batch-size:500}") int batchSize,
+                              @Value("${weblinkshield.persistence.write-behind.flush-interval:200ms}") Duration flushInterval,
+                              @Value("${weblinkshield.persistence.write-behind.offer-timeout:50ms}") Duration offerTimeout,
+                              @Value("${weblinkshield.persistence.write-behind.drain-timeout:30s}") Duration drainTimeout) {
+        this.repo = repo;
+        this.writeTx = writeTx;
+        this.db = db;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+        this.drainTimeout = drainTimeout;
+        Gauge.builder("weblinkshield.writebehind.pending", this, VerdictWriteBehind::size)
+                .description("URLs waiting to be written").register(registry);
+        this.coalesced = Counter.builder("weblinkshield.writebehind.coalesced")
+                .description("Writes replaced by a newer verdict for the same URL before flushing").register(registry);
+        this.flushed = Counter.builder("weblinkshield.writebehind.flushed").register(registry);
+        this.refused = Counter.builder("weblinkshield.writebehind.refused")
+                .description("Writes done synchronously by the caller because the queue was full").register(registry);
+        this.failures = Counter.builder("weblinkshield.writebehind.failures").register(registry);
+        this.flushTimer = Timer.builder("weblinkshield.writebehind.flush")
+                .description("One batch transaction").publishPercentileHistogram().register(registry);
+        this.lag = Timer.builder("weblinkshield.writebehind.lag")
+                .description("Queued to committed, per URL").publishPercentileHistogram().register(registry);
+    }
+
+    /**
+     * Queue a row for writing. Returns false when the queue stayed full for offer-timeout or is
+     * shutting down; the caller must then write the row itself.
+     */
+    public boolean offer(UrlVerdictJdbcRepo.UrlVerdict row) {
+        long deadline = System.nanoTime() + offerTimeout.toNanos();
+        lock.lock();
+        try {
+            while (true) {
+                if (!running) break;
+                Pending previous = pending.get(row.canon());
+                if (previous != null) {
+                    // keep the queue position (and age) of the first pending write
+                    pending.put(row.canon(), new Pending(row, previous.queuedAt()));
+                    coalesced.increment();
+                    return true;
+                }
+                if (pending.size() < capacity) {
+                    pending.put(row.canon(), new Pending(row, System.nanoTime()));
+                    if (pending.size() >= batchSize) requestFlush();
+                    return true;
+                }
+                long wait = deadline - System.nanoTime();
+                if (wait <= 0) break;
+                notFull.awaitNanos(wait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        refused.increment();
+        return false;
+    }
+
+    /** The not yet written row for a URL, if any (read-your-writes for verdict lookups). */
+    public UrlVerdictJdbcRepo.UrlVerdict pending(String canon) {
+        lock.lock();
+        try {
+            Pending p = pending.get(canon);
+            return p == null ? null : p.row();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---- flushing ----
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) flusher.execute(this::flushAll);
+    }
+
+    /** Write batches until fewer than a full batch is left (or everything, when draining). */
+    private void flushAll() {
+        flushRequested.set(false);
+        try {
+            while (flushBatch() == batchSize) {
+                // full batch written; there may be more
+            }
+        } catch (Exception e) {
+            log.warn("write-behind flush failed, will retry: {}", e.toString());
+        }
+    }
+
+    /** Write one batch; returns how many rows it wrote. */
+    private int flushBatch() {
+        List<Pending> batch = take();
+        if (batch.isEmpty()) return 0;
+        List<UrlVerdictJdbcRepo.UrlVerdict> rows = new ArrayList<>(batch.size());
+        for (Pending p : batch) rows.add(p.row());
+
+        long start = System.nanoTime();
+        try {
+            db.run(() -> writeTx.executeWithoutResult(tx -> repo.saveAll(rows)));
+        } catch (RuntimeException e) {
+            failures.increment();
+            putBack(batch);
+            throw e;
+        }
+        long end = System.nanoTime();
+        flushTimer.record(end - start, TimeUnit.NANOSECONDS);
+        for (Pending p : batch) lag.record(end - p.queuedAt(), TimeUnit.NANOSECONDS);
+        flushed.increment(batch.size());
+        return batch.size();
+    }
+
+    private List<Pending> take() {
+        lock.lock();
+        try {
+            List<Pending> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            Iterator<Pending> it = pending.values().iterator();
+            while (it.hasNext() && batch.size() < batchSize) {
+                batch.add(it.next());
+                it.remove();
+            }
+            if (!batch.isEmpty()) notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Requeue a failed batch; a newer write that arrived meanwhile wins. May exceed capacity. */
+    private void putBack(List<Pending> batch) {
+        lock.lock();
+        try {
+            for (Pending p : batch) pending.putIfAbsent(p.row().canon(), p);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---- lifecycle ----
+
+    @Override
+    public void start() {
+        running = true;
+        long millis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushAll, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        lock.lock();
+        try {
+            running = false; // late offers are refused and written by their callers
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusher.shutdown();
+        try {
+            // the flusher finishes its current flush; then drain here
+            flusher.awaitTermination(drainTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            long deadline = System.nanoTime() + drainTimeout.toNanos();
+            while (size() > 0 && System.nanoTime() < deadline) {
+                try {
+                    flushBatch();
+                } catch (RuntimeException e) {
+                    log.warn("write-behind drain failed, retrying: {}", e.toString());
+                    Thread.sleep(100);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int left = size();
+        if (left > 0) log.warn("write-behind stopped with {} verdicts unwritten", left);
+    }
+
+    @Override
+    public boolean isRunning() { return running; }
+
+    /** Below the web server's phases: stops after it stops accepting requests. */
+    @Override
+    public int getPhase() { return SmartLifecycle.DEFAULT_PHASE - 4096; }
+}
@@ -3,30 +3,31 @@ package org.weblinkshield.data.entity;
 import jakarta.persistence.*;
 import java.time.Instant;
 
+/**
+ * Network intel for one host, shared by every URL that points at it.
+ * (Was keyed by url_id in the old host_intel table.)
+ */
 @Entity
-@Table(name = "host_intel")
+@Table(name = "host")
 public class HostIntel {
 
-    @Id
-    private Long urlId; // maps to url.id
-
-    @OneToOne(fetch = FetchType.LAZY)
-    @MapsId
-    @JoinColumn(name = "url_id")
-    private Url url;
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
 
+    @Column(unique = true, nullable = false)
     private String domain;
-    private String tld;
+    private String tld;   // public suffix of the domain ("com", "co.uk", "github.io")
     private String ip;         // single best IP as string (v4/v6)
     private Integer domainAgeDays;
     private Integer tlsAgeDays;
     private String tlsIssuer;
     private Instant fetchedAt = Instant.now();
+    // false when the intel budget expired before that probe finished (null on rows from before these flags)
+    private Boolean dnsProbed;
+    private Boolean tlsProbed;
 
     // getters / setters
-    public Long getUrlId() { return urlId; }
-    public Url getUrl() { return url; }
-    public void setUrl(Url url) { this.url = url; }
+    public Long getId() { return id; }
     public String getDomain() { return domain; }
     public void setDomain(String domain) { this.domain = domain; }
     public String getTld() { return tld; }
@@ -41,4 +42,10 @@ public class HostIntel {
     public void setTlsIssuer(String tlsIssuer) { this.tlsIssuer = tlsIssuer; }
     public Instant getFetchedAt() { return fetchedAt; }
     public void setFetchedAt(Instant fetchedAt) { this.fetchedAt = fetchedAt; }
+    public boolean isDnsProbed() { return !Boolean.FALSE.equals(dnsProbed); }
+    public void setDnsProbed(boolean dnsProbed) { this.dnsProbed = dnsProbed; }
+    public boolean isTlsProbed() { return !Boolean.FALSE.equals(tlsProbed); }
+    public void setTlsProbed(boolean tlsProbed) { this.tlsProbed = tlsProbed; }
+    /** Some probe was still running when the budget expired; its fields say nothing. */
+    public boolean isPartial() { return !isDnsProbed() || !isTlsProbed(); }
 }
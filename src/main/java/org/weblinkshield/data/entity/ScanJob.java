@@ -0,0 +1,51 @@
+package org.weblinkshield.data.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/** Shared scan job row (used when weblinkshield.scan.store=jdbc). */
+@Entity @Table(name = "scan_job", indexes = {
+        @Index(name = "ix_scan_job_finished", columnList = "finished"),
+        @Index(name = "ix_scan_job_updated", columnList = "finished, updated")})
+public class ScanJob {
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String url;
+
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String payloadJson;
+
+    @Column(nullable = false)
+    private long version;
+
+    @Column(nullable = false, updatable = false)
+    private Instant created;
+
+    private Instant finished;
+
+    private Instant updated;   // last write or heartbeat by the node running it (null on older rows)
+
+    // getters/setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public String getPayloadJson() { return payloadJson; }
+    public void setPayloadJson(String payloadJson) { this.payloadJson = payloadJson; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    public Instant getCreated() { return created; }
+    public void setCreated(Instant created) { this.created = created; }
+    public Instant getFinished() { return finished; }
+    public void setFinished(Instant finished) { this.finished = finished; }
+    public Instant getUpdated() { return updated; }
+    public void setUpdated(Instant updated) { this.updated = updated; }
+}
@@ -1,22 +1,43 @@
 package org.weblinkshield.data.entity;
 
 import jakarta.persistence.*;
+import org.weblinkshield.util.Sha256;
+
 import java.time.Instant;
 
-@Entity @Table(name = "url")
+/**
+ * One canonical URL. Rows are identified by url_hash, the SHA-256 of url_canon, under a
+ * fixed-width unique index; url_canon itself is not indexed and is compared only to verify a
+ * hash match. The hash is nullable until rows written before it existed are backfilled
+ * (see UrlHashBackfill and db/url_hash.sql).
+ */
+@Entity @Table(name = "url", uniqueConstraints = @UniqueConstraint(name = "ux_url_hash", columnNames = "url_hash"))
 public class Url {
     @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(columnDefinition = "TEXT", unique = true, nullable = false)
+    @Column(columnDefinition = "TEXT", nullable = false)
     private String urlCanon;
 
+    @Column(name = "url_hash", columnDefinition = "BINARY(32)", length = 32)
+    private byte[] urlHash;
+
     @Column(nullable = false, updatable = false)
     private Instant firstSeen = Instant.now();
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "host_id")
+    private HostIntel host;       // shared per-host intel (nullable until collected)
+
     // getters/setters
     public Long getId() { return id; }
     public String getUrlCanon() { return urlCanon; }
-    public void setUrlCanon(String urlCanon) { this.urlCanon = urlCanon; }
+    public void setUrlCanon(String urlCanon) { this.urlCanon = urlCanon; this.urlHash = hash(urlCanon); }
+    public byte[] getUrlHash() { return urlHash; }
     public Instant getFirstSeen() { return firstSeen; }
+    public HostIntel getHost() { return host; }
+    public void setHost(HostIntel host) { this.host = host; }
+
+    /** url_hash of a canonical URL. */
+    public static byte[] hash(String canon) { return Sha256.of(canon); }
 }
@@ -3,4 +3,11 @@ package org.weblinkshield.data.repo;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.weblinkshield.data.entity.HostIntel;
 
-public interface HostIntelRepo extends JpaRepository<HostIntel, Long> {}
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface HostIntelRepo extends JpaRepository<HostIntel, Long> {
+    Optional<HostIntel> findByDomain(String domain);
+    List<HostIntel> findByDomainIn(Collection<String> domains);
+}
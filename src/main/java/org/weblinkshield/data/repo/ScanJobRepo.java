@@ -0,0 +1,67 @@
+package org.weblinkshield.data.repo;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import org.weblinkshield.data.entity.ScanJob;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface ScanJobRepo extends JpaRepository<ScanJob, String> {
+
+    /** Lightweight change feed row: everything a subscriber needs, nothing it does not. */
+    interface VersionView {
+        String getId();
+        long getVersion();
+    }
+
+    List<VersionView> findByIdIn(Collection<String> ids);
+
+    /** Writes only while the job is unfinished: a job already failed as stale stays failed. */
+    @Transactional
+    @Modifying
+    @Query("""
+            update ScanJob j set j.status = :status, j.version = :version, j.finished = :finished, j.updated = :now
+            where j.id = :id and j.finished is null""")
+    int updateStatus(@Param("id") String id, @Param("status") String status,
+                     @Param("version") long version, @Param("finished") Instant finished, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update ScanJob j set j.status = :status, j.payloadJson = :payload, j.version = :version,
+                j.finished = :finished, j.updated = :now
+            where j.id = :id and j.finished is null""")
+    int updateStatusAndPayload(@Param("id") String id, @Param("status") String status, @Param("payload") String payload,
+                               @Param("version") long version, @Param("finished") Instant finished, @Param("now") Instant now);
+
+    /** Heartbeat of the jobs a node is running. */
+    @Transactional
+    @Modifying
+    @Query("update ScanJob j set j.updated = :now where j.id in :ids and j.finished is null")
+    int touch(@Param("ids") Collection<String> ids, @Param("now") Instant now);
+
+    /** Fail unfinished jobs nobody has written or heartbeated since the cutoff (their node is gone). */
+    @Transactional
+    @Modifying
+    @Query("""
+            update ScanJob j set j.status = 'ERROR', j.payloadJson = :payload, j.version = j.version + 1,
+                j.finished = :now, j.updated = :now
+            where j.finished is null and coalesce(j.updated, j.created) < :cutoff""")
+    int failStale(@Param("cutoff") Instant cutoff, @Param("payload") String payload, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ScanJob j where j.finished < :cutoff")
+    int deleteFinishedBefore(@Param("cutoff") Instant cutoff);
+
+    /** Backstop for unfinished jobs {@link #failStale} has not reached (e.g. its sweep kept failing). */
+    @Transactional
+    @Modifying
+    @Query("delete from ScanJob j where j.finished is null and coalesce(j.updated, j.created) < :cutoff")
+    int deleteUnfinishedIdleBefore(@Param("cutoff") Instant cutoff);
+}
@@ -6,5 +6,16 @@ import org.weblinkshield.data.entity.Url;
 import java.util.Optional;
 
 public interface UrlRepo extends JpaRepository<Url, Long> {
-    Optional<Url> findByUrlCanon(String urlCanon);
+    Optional<Url> findByUrlHash(byte[] urlHash);
+
+    /** Lookup through the url_hash index; the stored canon must match, so a hash collision is a miss. */
+    default Optional<Url> findByCanon(String canon) {
+        return findByUrlHash(Url.hash(canon)).filter(u -> canon.equals(u.getUrlCanon()));
+    }
+
+    /**
+     * A row of this URL written before url_hash existed and not backfilled yet. url_hash IS NULL
+     * is an index range on ux_url_hash, so this only scans the rows still waiting for the backfill.
+     */
+    Optional<Url> findFirstByUrlHashIsNullAndUrlCanon(String urlCanon);
 }
@@ -0,0 +1,302 @@
+package org.weblinkshield.data.repo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Repository;
+import org.weblinkshield.data.entity.Url;
+import org.weblinkshield.data.entity.Verdict;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Url/verdict persistence without entity round trips. Single URLs are two upserts that never
+ * read first; bulk analysis uses IN-list lookups and JDBC batches instead of one find/save per URL
+ * (with rewriteBatchedStatements=true MySQL receives each batch as a single statement).
+ * Calls are timed like the Spring Data repositories' own queries, as
+ * spring.data.repository.invocations{repository=UrlVerdictJdbcRepo,method=...}.
+ */
+@Repository
+public class UrlVerdictJdbcRepo {
+
+    /** Max values per IN (...) list / JDBC batch. */
+    private static final int CHUNK = 500;
+
+    private final JdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate named;
+    private final MeterRegistry registry;
+    private final Map<String, Timer> succeeded = new ConcurrentHashMap<>(); // by method
+
+    public UrlVerdictJdbcRepo(JdbcTemplate jdbc, NamedParameterJdbcTemplate named, MeterRegistry registry) {
+        this.jdbc = jdbc; this.named = named; this.registry = registry;
+    }
+
+    /** Existing url row: id + current host FK (may be null). */
+    public record UrlRef(long id, Long hostId) {}
+
+    /** One verdict row to upsert. */
+    public record VerdictRow(long urlId, Verdict.Status verdict, Verdict.ClassLabel clazz,
+                             double score, String reasonsJson) {}
+
+    /** Everything stored for one analyzed URL: its url row (host FK may be null) and verdict. */
+    public record UrlVerdict(String canon, Long hostId, Verdict.Status verdict, Verdict.ClassLabel clazz,
+                             double score, String reasonsJson) {}
+
+    /**
+     * Upsert url + verdict rows for many URLs: one IN-list read, then batched inserts for new
+     * urls, host repoints and verdict upserts. Run inside the caller's transaction.
+     * Rows are written in canon / url id order, so concurrent batches over overlapping URLs
+     * take their row locks in the same order and wait for each other instead of deadlocking.
+     */
+    public void saveAll(Collection<UrlVerdict> rows) {
+        Map<String, UrlVerdict> byCanon = new TreeMap<>();
+        for (UrlVerdict r : rows) byCanon.put(r.canon(), r);
+        Map<String, UrlRef> urls = findUrls(byCanon.keySet());
+
+        Map<String, Long> toInsert = new LinkedHashMap<>();
+        Map<Long, Long> toRepoint = new TreeMap<>();
+        for (UrlVerdict r : byCanon.values()) {
+            UrlRef ref = urls.get(r.canon());
+            if (ref == null) toInsert.put(r.canon(), r.hostId());
+            else if (r.hostId() != null && !r.hostId().equals(ref.hostId())) toRepoint.put(ref.id(), r.hostId());
+        }
+        if (!toInsert.isEmpty()) {
+            insertUrls(toInsert);
+            // locking read: under REPEATABLE READ a plain SELECT would not see rows another
+            // transaction committed after our first read, though the insert just collided with them
+            urls.putAll(timed("findUrls", () -> selectUrls(toInsert.keySet(), " FOR UPDATE")));
+        }
+        if (!toRepoint.isEmpty()) updateHosts(toRepoint);
+
+        List<VerdictRow> verdicts = new ArrayList<>(byCanon.size());
+        for (UrlVerdict r : byCanon.values()) {
+            UrlRef ref = urls.get(r.canon());
+            if (ref == null) {
+                // only a url_hash shared with another canon gets here; fail rather than drop the verdict
+                throw new IllegalStateException("No url row for " + r.canon() + " after insert (url_hash collision?)");
+            }
+            verdicts.add(new VerdictRow(ref.id(), r.verdict(), r.clazz(), r.score(), r.reasonsJson()));
+        }
+        verdicts.sort(Comparator.comparingLong(VerdictRow::urlId));
+        upsertVerdicts(verdicts);
+    }
+
+    /** Upsert the url + verdict rows of one analyzed URL: two statements, no reads. */
+    public void save(UrlVerdict r) {
+        long urlId = upsertUrl(r.canon(), r.hostId());
+        upsertVerdict(new VerdictRow(urlId, r.verdict(), r.clazz(), r.score(), r.reasonsJson()));
+    }
+
+    /**
+     * Insert a url row, or touch the existing one, and return its id in the same statement:
+     * on a duplicate url_hash, id = LAST_INSERT_ID(id) makes MySQL report the existing id as
+     * the generated key, so concurrent first sightings of a URL never hit the unique constraint.
+     * A non-null host id repoints the row; null keeps its current host. A row not yet backfilled
+     * (url_hash NULL) never conflicts, so its URL gets a second, hashed row here; UrlHashBackfill
+     * later deletes the unhashed one.
+     */
+    public long upsertUrl(String canon, Long hostId) {
+        Timestamp now = Timestamp.from(Instant.now());
+        byte[] hash = Url.hash(canon);
+        return timed("upsertUrl", () -> {
+            GeneratedKeyHolder keys = new GeneratedKeyHolder();
+            jdbc.update(con -> {
+                PreparedStatement ps = con.prepareStatement("""
+                        INSERT INTO url (url_hash, url_canon, first_seen, host_id) VALUES (?, ?, ?, ?)
+                        ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id), host_id = COALESCE(VALUES(host_id), host_id)
+                        """, Statement.RETURN_GENERATED_KEYS);
+                ps.setBytes(1, hash);
+                ps.setString(2, canon);
+                ps.setTimestamp(3, now);
+                if (hostId == null) ps.setNull(4, Types.BIGINT); else ps.setLong(4, hostId);
+                return ps;
+            }, keys);
+            Number id = keys.getKey();
+            if (id != null) return id.longValue();
+            // drivers that report no key for the update branch (H2 in MySQL mode): look it up
+            return jdbc.queryForObject("SELECT id FROM url WHERE url_hash = ?", Long.class, (Object) hash);
+        });
+    }
+
+    /** Insert-or-update one verdict without reading it first. */
+    public void upsertVerdict(VerdictRow r) {
+        Timestamp now = Timestamp.from(Instant.now());
+        timed("upsertVerdict", () -> jdbc.update(UPSERT_VERDICT, ps -> bindVerdict(ps, r, now)));
+    }
+
+    /**
+     * url_canon -> row for every canonical URL that already exists, looked up by url_hash.
+     * A row whose stored canon is not one of the requested URLs (a hash collision) is ignored.
+     */
+    public Map<String, UrlRef> findUrls(Collection<String> canons) {
+        return timed("findUrls", () -> selectUrls(canons, ""));
+    }
+
+    /**
+     * Batch-insert new url rows (canon -> host id). A row inserted concurrently elsewhere is left
+     * as it is (the duplicate-key update is a no-op); any other error fails the batch.
+     */
+    public void insertUrls(Map<String, Long> hostByCanon) {
+        Timestamp now = Timestamp.from(Instant.now());
+        timed("insertUrls", () -> {
+            for (List<Map.Entry<String, Long>> chunk : chunks(hostByCanon.entrySet())) {
+                jdbc.batchUpdate("""
+                        INSERT INTO url (url_hash, url_canon, first_seen, host_id) VALUES (?, ?, ?, ?)
+                        ON DUPLICATE KEY UPDATE id = id
+                        """,
+                        chunk, chunk.size(), (ps, e) -> {
+                            ps.setBytes(1, Url.hash(e.getKey()));
+                            ps.setString(2, e.getKey());
+                            ps.setTimestamp(3, now);
+                            if (e.getValue() == null) ps.setNull(4, Types.BIGINT); else ps.setLong(4, e.getValue());
+                        });
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Up to {@code limit} url rows (id -> canon) still missing their url_hash, locked until the
+     * caller's transaction ends. Rows another transaction has locked are skipped, so concurrent
+     * callers (the backfill on several nodes) get disjoint batches.
+     */
+    public Map<Long, String> findUnhashed(int limit) {
+        return timed("findUnhashed", () -> {
+            Map<Long, String> out = new LinkedHashMap<>(limit * 2);
+            jdbc.query("SELECT id, url_canon FROM url WHERE url_hash IS NULL LIMIT ? FOR UPDATE SKIP LOCKED",
+                    rs -> { out.put(rs.getLong("id"), rs.getString("url_canon")); }, limit);
+            return out;
+        });
+    }
+
+    /** Batch-set url_hash on rows found by {@link #findUnhashed}. */
+    public void setHashes(Map<Long, String> canonById) {
+        timed("setHashes", () -> {
+            for (List<Map.Entry<Long, String>> chunk : chunks(canonById.entrySet())) {
+                jdbc.batchUpdate("UPDATE url SET url_hash = ? WHERE id = ? AND url_hash IS NULL",
+                        chunk, chunk.size(), (ps, e) -> {
+                            ps.setBytes(1, Url.hash(e.getValue()));
+                            ps.setLong(2, e.getKey());
+                        });
+            }
+            return null;
+        });
+    }
+
+    /** Delete url rows and their verdicts (duplicates superseded by a hashed row). */
+    public void deleteUrls(Collection<Long> ids) {
+        timed("deleteUrls", () -> {
+            for (List<Long> chunk : chunks(ids)) {
+                MapSqlParameterSource params = new MapSqlParameterSource("ids", chunk);
+                named.update("DELETE FROM verdict WHERE url_id IN (:ids)", params);
+                named.update("DELETE FROM url WHERE id IN (:ids)", params);
+            }
+            return null;
+        });
+    }
+
+    /** Batch-repoint existing url rows at their (shared) host row. */
+    public void updateHosts(Map<Long, Long> hostByUrlId) {
+        timed("updateHosts", () -> {
+            for (List<Map.Entry<Long, Long>> chunk : chunks(hostByUrlId.entrySet())) {
+                jdbc.batchUpdate("UPDATE url SET host_id = ? WHERE id = ?",
+                        chunk, chunk.size(), (ps, e) -> {
+                            ps.setLong(1, e.getValue());
+                            ps.setLong(2, e.getKey());
+                        });
+            }
+            return null;
+        });
+    }
+
+    /** Batch insert-or-update verdicts without reading them first. */
+    public void upsertVerdicts(Collection<VerdictRow> rows) {
+        Timestamp now = Timestamp.from(Instant.now());
+        timed("upsertVerdicts", () -> {
+            for (List<VerdictRow> chunk : chunks(rows)) {
+                jdbc.batchUpdate(UPSERT_VERDICT, chunk, chunk.size(), (ps, r) -> bindVerdict(ps, r, now));
+            }
+            return null;
+        });
+    }
+
+    // ---- helpers ----
+
+    /** Body of {@link #findUrls}; {@code lock} is appended to the SELECT (e.g. " FOR UPDATE"). */
+    private Map<String, UrlRef> selectUrls(Collection<String> canons, String lock) {
+        Map<String, UrlRef> out = new HashMap<>(canons.size() * 2);
+        for (List<String> chunk : chunks(canons)) {
+            Set<String> wanted = new HashSet<>(chunk);
+            named.query("SELECT id, url_canon, host_id FROM url WHERE url_hash IN (:hashes)" + lock,
+                    new MapSqlParameterSource("hashes", chunk.stream().map(Url::hash).toList()),
+                    rs -> {
+                        String canon = rs.getString("url_canon");
+                        long hostId = rs.getLong("host_id");
+                        Long host = rs.wasNull() ? null : hostId; // before the next getter resets wasNull
+                        if (wanted.contains(canon)) out.put(canon, new UrlRef(rs.getLong("id"), host));
+                    });
+        }
+        return out;
+    }
+
+    private static final String UPSERT_VERDICT = """
+            INSERT INTO verdict (url_id, verdict, class, score, reasons_json, ts)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE verdict = VALUES(verdict), class = VALUES(class),
+                score = VALUES(score), reasons_json = VALUES(reasons_json), ts = VALUES(ts)
+            """;
+
+    private static void bindVerdict(PreparedStatement ps, VerdictRow r, Timestamp now) throws SQLException {
+        ps.setLong(1, r.urlId());
+        ps.setString(2, r.verdict().name());
+        ps.setString(3, r.clazz().name());
+        ps.setDouble(4, r.score());
+        ps.setString(5, r.reasonsJson());
+        ps.setTimestamp(6, now);
+    }
+
+    /** Successful calls reuse one timer per method; failures (rare) look theirs up by exception. */
+    private <T> T timed(String method, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            succeeded.computeIfAbsent(method, m -> invocations(m, "SUCCESS", "None"))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException e) {
+            invocations(method, "ERROR", e.getClass().getSimpleName())
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Timer invocations(String method, String state, String exception) {
+        return Timer.builder("spring.data.repository.invocations")
+                .tag("repository", "UrlVerdictJdbcRepo")
+                .tag("method", method)
+                .tag("state", state)
+                .tag("exception", exception)
+                .register(registry);
+    }
+
+    private static <T> List<List<T>> chunks(Collection<T> items) {
+        List<T> all = (items instanceof List<T> l) ? l : new ArrayList<>(items);
+        List<List<T>> out = new ArrayList<>((all.size() + CHUNK - 1) / CHUNK);
+        for (int i = 0; i < all.size(); i += CHUNK) {
+            out.add(all.subList(i, Math.min(all.size(), i + CHUNK)));
+        }
+        return out;
+    }
+}
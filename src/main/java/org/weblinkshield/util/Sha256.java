@@ -0,0 +1,28 @@
+package org.weblinkshield.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** SHA-256 of UTF-8 strings, shared by the url_hash column and the reputation index keys. */
+public final class Sha256 {
+    private Sha256() {}
+
+    private static final MessageDigest PROTOTYPE;
+    static {
+        try {
+            PROTOTYPE = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public static byte[] of(String s) {
+        try {
+            MessageDigest md = (MessageDigest) PROTOTYPE.clone(); // cheaper than getInstance per call
+            return md.digest(s.getBytes(StandardCharsets.UTF_8));
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+-- url_hash migration (MySQL): key url rows on SHA-256(url_canon) instead of the TEXT column.
+-- New databases get the column and ux_url_hash from the entity mapping; run this on existing ones.
+
+-- 1) before deploying: add the nullable column and its unique index
+ALTER TABLE url ADD COLUMN url_hash BINARY(32) NULL AFTER id, ALGORITHM=INSTANT;
+ALTER TABLE url ADD UNIQUE INDEX ux_url_hash (url_hash), ALGORITHM=INPLACE, LOCK=NONE;
+
+-- 2) deploy: UrlHashBackfill hashes the remaining rows in the background (merging any duplicate
+--    a new node inserted meanwhile), logs "url_hash backfill complete" and stops. Rows old nodes
+--    write later in the rollout are taken care of by the next restart of a node. Backfilling from SQL
+--    before deploying avoids those duplicates; repeat until 0 rows change (url_canon is ASCII,
+--    so SHA2 matches the application's hash of its UTF-8 bytes):
+-- UPDATE url SET url_hash = UNHEX(SHA2(url_canon, 256)) WHERE url_hash IS NULL LIMIT 10000;
+
+-- 3) once every node runs the new version and the backfill is complete: make the hash mandatory
+--    and drop any old index on url_canon (look its name up with SHOW INDEX FROM url WHERE Column_name = 'url_canon')
+ALTER TABLE url MODIFY url_hash BINARY(32) NOT NULL, ALGORITHM=INPLACE, LOCK=NONE;
+-- ALTER TABLE url DROP INDEX <url_canon index>;
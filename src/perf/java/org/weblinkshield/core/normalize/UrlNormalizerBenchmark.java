@@ -0,0 +1,43 @@
+package org.weblinkshield.core.normalize;
+
+import org.openjdk.jmh.annotations.*;
+import org.weblinkshield.perf.Corpus;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Canonicalization per URL, current vs the old URI-based implementation (kept in test scope
+ * as {@link LegacyUrlNormalizer}, hence this package).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlNormalizerBenchmark {
+
+    @Param({Corpus.BENIGN, Corpus.SUSPICIOUS})
+    public String corpus;
+
+    private String[] urls;
+    private int next;
+
+    @Setup
+    public void load() { urls = Corpus.raw(corpus); }
+
+    private String nextUrl() {
+        String u = urls[next];
+        if (++next == urls.length) next = 0;
+        return u;
+    }
+
+    @Benchmark
+    public String canon() { return UrlNormalizer.canon(nextUrl()); }
+
+    @Benchmark
+    public String legacyCanon() { return LegacyUrlNormalizer.canon(nextUrl()); }
+
+    @Benchmark
+    public String site() { return UrlNormalizer.site(UrlNormalizer.host(UrlNormalizer.canon(nextUrl()))); }
+}
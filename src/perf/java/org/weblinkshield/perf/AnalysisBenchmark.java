@@ -0,0 +1,90 @@
+package org.weblinkshield.perf;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.weblinkshield.WeblinkshieldApiApplication;
+import org.weblinkshield.core.intel.IntelCollector;
+import org.weblinkshield.core.service.AnalysisService;
+import org.weblinkshield.core.service.VerdictResponse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole analyze pipeline (canonicalize, lists, intel lookup, rules, JSON, url + verdict
+ * upserts) in a full application context on in-memory H2, with {@link StubIntelCollector}
+ * in place of DNS/TLS probes. The corpus is analyzed once during setup, so iterations measure
+ * the steady state: intel cached and url rows present.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AnalysisBenchmark {
+
+    static final int BATCH = 50;
+
+    @Param({Corpus.BENIGN, Corpus.SUSPICIOUS})
+    public String corpus;
+
+    private ConfigurableApplicationContext context;
+    private AnalysisService analysis;
+    private String[] urls;
+    private int next;
+
+    @Configuration(proxyBeanMethods = false)
+    static class StubIntel {
+        @Bean
+        @Primary
+        IntelCollector stubIntelCollector() { return new StubIntelCollector(); }
+    }
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        // command-line arguments, so they win over application.yml
+        context = new SpringApplicationBuilder(WeblinkshieldApiApplication.class, StubIntel.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--spring.datasource.url=jdbc:h2:mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=VALUE",
+                     "--spring.datasource.username=sa",
+                     "--spring.datasource.password=",
+                     "--spring.jpa.hibernate.ddl-auto=create",
+                     "--logging.level.root=WARN");
+        analysis = context.getBean(AnalysisService.class);
+        urls = Corpus.raw(corpus);
+        for (int i = 0; i < urls.length; i += BATCH) {
+            analysis.analyzeBatch(Arrays.asList(urls).subList(i, Math.min(i + BATCH, urls.length)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() { context.close(); }
+
+    // shared cursor: under -t N threads interleave over the corpus
+    private synchronized int advance(int n) {
+        int i = next;
+        next = (next + n) % urls.length;
+        return i;
+    }
+
+    @Benchmark
+    public VerdictResponse analyze() {
+        return analysis.analyze(urls[advance(1)]);
+    }
+
+    /** One bulk call of {@value #BATCH} URLs; divide by the batch size for a per-URL figure. */
+    @Benchmark
+    public List<VerdictResponse> analyzeBatch() {
+        int from = advance(BATCH);
+        int to = Math.min(from + BATCH, urls.length);
+        return analysis.analyzeBatch(Arrays.asList(urls).subList(from, to));
+    }
+}
@@ -0,0 +1,47 @@
+package org.weblinkshield.perf;
+
+import org.weblinkshield.core.normalize.UrlNormalizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * URL corpora checked in under src/perf/resources/corpus, one URL per line ('#' comments):
+ * "benign" (ordinary links) and "suspicious" (phishing-shaped links).
+ */
+public final class Corpus {
+    private Corpus() {}
+
+    public static final String BENIGN = "benign";
+    public static final String SUSPICIOUS = "suspicious";
+
+    /** Raw lines as a user would submit them. */
+    public static String[] raw(String name) {
+        String location = "/corpus/" + name + ".txt";
+        try (InputStream in = Corpus.class.getResourceAsStream(location)) {
+            if (in == null) throw new IllegalArgumentException("No corpus " + location);
+            List<String> urls = new ArrayList<>();
+            BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (!line.isBlank() && !line.startsWith("#")) urls.add(line);
+            }
+            return urls.toArray(new String[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Canonical forms, for benchmarks that start after normalization. */
+    public static String[] canon(String name) {
+        String[] urls = raw(name);
+        for (int i = 0; i < urls.length; i++) urls[i] = UrlNormalizer.canon(urls[i]);
+        return urls;
+    }
+}
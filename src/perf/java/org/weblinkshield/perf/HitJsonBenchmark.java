@@ -0,0 +1,75 @@
+package org.weblinkshield.perf;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.weblinkshield.core.normalize.UrlNormalizer;
+import org.weblinkshield.core.rules.CompiledRuleSet;
+import org.weblinkshield.core.rules.ReasonCodec;
+import org.weblinkshield.core.rules.RulesEngine;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rule hits to their stored form: the old full JSON (write, and the write-then-parse round trip
+ * analyze used to do for its response map) against the compact {@link ReasonCodec} codes
+ * (encode, and encode-then-decode as a verdict lookup does).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HitJsonBenchmark {
+
+    @Param({Corpus.BENIGN, Corpus.SUSPICIOUS})
+    public String corpus;
+
+    private final ObjectMapper om = new ObjectMapper();
+    private List<RulesEngine.Hit>[] hitLists;
+    private int next;
+    private CompiledRuleSet ruleSet;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void load() {
+        String[] urls = Corpus.canon(corpus);
+        RulesEngine rules = new RulesEngine();
+        ruleSet = rules.ruleSet();
+        StubIntelCollector collector = new StubIntelCollector();
+        hitLists = new List[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            hitLists[i] = rules.newHits();
+            rules.score(urls[i], collector.collect(UrlNormalizer.host(urls[i])), hitLists[i]);
+        }
+    }
+
+    private List<RulesEngine.Hit> nextHits() {
+        List<RulesEngine.Hit> hits = hitLists[next];
+        if (++next == hitLists.length) next = 0;
+        return hits;
+    }
+
+    @Benchmark
+    public String write() throws JsonProcessingException {
+        return om.writeValueAsString(nextHits());
+    }
+
+    @Benchmark
+    public JsonNode writeAndParse() throws JsonProcessingException {
+        return om.readTree(om.writeValueAsString(nextHits()));
+    }
+
+    @Benchmark
+    public String encode() {
+        return ReasonCodec.encode(nextHits());
+    }
+
+    @Benchmark
+    public List<RulesEngine.Hit> encodeAndDecode() {
+        return ReasonCodec.decode(ReasonCodec.encode(nextHits()), ruleSet);
+    }
+}
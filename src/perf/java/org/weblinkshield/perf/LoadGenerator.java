@@ -0,0 +1,281 @@
+package org.weblinkshield.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Open-model load generator for /api/analyze and /api/v1/scan.
+ *
+ * Requests start on a fixed schedule (rate per second) whether or not earlier ones have
+ * finished, each on its own virtual thread, and latency is measured from the scheduled start,
+ * so a stalled server shows up as latency instead of silently lowering the offered load
+ * (no coordinated omission). A scan is recorded twice: scan.submit (the POST) and
+ * scan.complete (until its event stream ends with DONE/ERROR).
+ *
+ * <pre>
+ *   # server: mvn spring-boot:run -Dspring-boot.run.profiles=loadtest
+ *   mvn -Pperf test-compile exec:exec@loadtest -Dloadtest.args="--rate 200 --duration 60s --mix analyze=80,scan=20"
+ * </pre>
+ * Options: --base URL, --rate N, --duration D, --warmup D (not recorded), --mix name=weight,...,
+ * --corpus benign,suspicious, --timeout D, --max-in-flight N, --out DIR. Prints p50/p99/p999,
+ * throughput and error rate per endpoint and writes DIR/loadtest-result.json plus one
+ * HdrHistogram percentile file (.hgrm) per endpoint.
+ */
+public final class LoadGenerator {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /** Latency histogram and counters of one endpoint. */
+    static final class Stats {
+        final Histogram latency = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+        final LongAdder ok = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        void record(long scheduledNanos, boolean success) {
+            long micros = Math.min(HIGHEST_MICROS, (System.nanoTime() - scheduledNanos) / 1000);
+            latency.recordValue(Math.max(0, micros));
+            (success ? ok : errors).increment();
+        }
+    }
+
+    private final URI base;
+    private final HttpClient http;
+    private final Duration timeout;
+    private final String[] urls;
+    private final Map<String, Stats> stats = new LinkedHashMap<>();
+    private volatile boolean recording;
+
+    LoadGenerator(URI base, Duration timeout, String[] urls) {
+        this.base = base;
+        this.timeout = timeout;
+        this.urls = urls;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        for (String name : List.of("analyze", "scan.submit", "scan.complete")) stats.put(name, new Stats());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new LinkedHashMap<>(Map.of(
+                "base", "http://localhost:8080", "rate", "50", "duration", "60s", "warmup", "10s",
+                "mix", "analyze=80,scan=20", "corpus", Corpus.BENIGN + "," + Corpus.SUSPICIOUS,
+                "timeout", "30s", "max-in-flight", "10000", "out", "target/loadtest"));
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String key = args[i].replaceFirst("^--", "");
+            if (!opt.containsKey(key)) throw new IllegalArgumentException("unknown option " + args[i]);
+            opt.put(key, args[i + 1]);
+        }
+
+        List<String> urls = new ArrayList<>();
+        for (String name : opt.get("corpus").split(",")) urls.addAll(List.of(Corpus.raw(name.strip())));
+        LoadGenerator gen = new LoadGenerator(URI.create(opt.get("base")), duration(opt.get("timeout")),
+                urls.toArray(new String[0]));
+
+        double rate = Double.parseDouble(opt.get("rate"));
+        Mix mix = Mix.parse(opt.get("mix"));
+        int maxInFlight = Integer.parseInt(opt.get("max-in-flight"));
+        Duration warmup = duration(opt.get("warmup"));
+        Duration measure = duration(opt.get("duration"));
+
+        System.out.printf("offering %.0f req/s (%s) to %s: %s warm-up, %s measured%n",
+                rate, opt.get("mix"), opt.get("base"), warmup, measure);
+        long dropped = gen.run(rate, mix, maxInFlight, warmup, measure);
+        gen.report(measure, dropped, Path.of(opt.get("out")), opt);
+    }
+
+    /** Offer load for warm-up + measure; returns how many starts were skipped at max in-flight. */
+    long run(double rate, Mix mix, int maxInFlight, Duration warmup, Duration measure) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long dropped = 0;
+        long interval = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + measure.toNanos();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long n = 0; ; n++) {
+                long scheduled = start + n * interval;
+                if (scheduled >= end) break;
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                if (!recording && scheduled >= measureFrom) recording = true;
+                if (!inFlight.tryAcquire()) { // the generator itself is saturated: count, do not wait
+                    if (recording) dropped++;
+                    continue;
+                }
+                String url = urls[(int) (n % urls.length)];
+                String kind = mix.pick(ThreadLocalRandom.current().nextInt(mix.total));
+                boolean record = recording;
+                workers.submit(() -> {
+                    try {
+                        if (kind.equals("scan")) scan(url, scheduled, record);
+                        else analyze(url, scheduled, record);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            recording = false;
+            // in-flight requests finish (or time out) before the executor closes
+        }
+        return dropped;
+    }
+
+    private void analyze(String url, long scheduled, boolean record) {
+        boolean ok;
+        try {
+            ok = post("/api/analyze", url).statusCode() == 200;
+        } catch (Exception e) {
+            ok = false;
+        }
+        if (record) stats.get("analyze").record(scheduled, ok);
+    }
+
+    private void scan(String url, long scheduled, boolean record) {
+        String jobId = null;
+        try {
+            HttpResponse<String> submitted = post("/api/v1/scan", url);
+            if (submitted.statusCode() == 200) jobId = JSON.readTree(submitted.body()).path("jobId").asText(null);
+        } catch (Exception ignored) {
+            // counted below
+        }
+        if (record) stats.get("scan.submit").record(scheduled, jobId != null);
+        if (jobId == null) {
+            if (record) stats.get("scan.complete").record(scheduled, false);
+            return;
+        }
+
+        boolean done = false;
+        try {
+            HttpRequest req = HttpRequest.newBuilder(base.resolve("/api/v1/scan/" + jobId + "/stream"))
+                    .timeout(timeout).header("Accept", "text/event-stream").GET().build();
+            HttpResponse<Stream<String>> res = http.send(req, HttpResponse.BodyHandlers.ofLines());
+            if (res.statusCode() == 200) {
+                try (Stream<String> lines = res.body()) {
+                    // the stream ends after the job's final snapshot
+                    String last = lines.filter(l -> l.startsWith("data:")).reduce((a, b) -> b).orElse("");
+                    done = last.contains("\"DONE\"");
+                }
+            }
+        } catch (Exception ignored) {
+            // counted below
+        }
+        if (record) stats.get("scan.complete").record(scheduled, done);
+    }
+
+    private HttpResponse<String> post(String path, String url) throws IOException, InterruptedException {
+        String body = JSON.writeValueAsString(Map.of("url", url));
+        HttpRequest req = HttpRequest.newBuilder(base.resolve(path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return http.send(req, HttpResponse.BodyHandlers.ofString());
+    }
+
+    // ---- report ----
+
+    private void report(Duration measured, long dropped, Path out, Map<String, String> options) throws IOException {
+        Files.createDirectories(out);
+        double seconds = measured.toMillis() / 1000.0;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("options", options);
+        result.put("dropped", dropped);
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+
+        System.out.printf("%n%-14s %9s %8s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        stats.forEach((name, s) -> {
+            long ok = s.ok.sum(), errors = s.errors.sum(), total = ok + errors;
+            if (total == 0) return;
+            Histogram h = s.latency;
+            System.out.printf("%-14s %9d %7.2f%% %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, total,
+                    100.0 * errors / total, total / seconds, ms(h.getValueAtPercentile(50)),
+                    ms(h.getValueAtPercentile(99)), ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()));
+
+            Map<String, Object> e = new LinkedHashMap<>();
+            e.put("requests", total);
+            e.put("errors", errors);
+            e.put("errorRate", (double) errors / total);
+            e.put("throughput", total / seconds);
+            e.put("p50Ms", ms(h.getValueAtPercentile(50)));
+            e.put("p90Ms", ms(h.getValueAtPercentile(90)));
+            e.put("p99Ms", ms(h.getValueAtPercentile(99)));
+            e.put("p999Ms", ms(h.getValueAtPercentile(99.9)));
+            e.put("maxMs", ms(h.getMaxValue()));
+            endpoints.put(name, e);
+
+            try (PrintStream hgrm = new PrintStream(Files.newOutputStream(out.resolve(name + ".hgrm")))) {
+                h.outputPercentileDistribution(hgrm, 1000.0); // micros -> ms
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        if (dropped > 0) System.out.printf("%d scheduled requests skipped: generator hit --max-in-flight%n", dropped);
+
+        result.put("endpoints", endpoints);
+        JSON.writerWithDefaultPrettyPrinter().writeValue(out.resolve("loadtest-result.json").toFile(), result);
+        System.out.println("results in " + out.toAbsolutePath());
+    }
+
+    private static double ms(long micros) { return Math.round(micros / 100.0) / 10.0; }
+
+    private static Duration duration(String s) {
+        String v = s.strip().toLowerCase();
+        if (v.endsWith("ms")) return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        if (v.endsWith("s")) return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)));
+        if (v.endsWith("m")) return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1)));
+        return Duration.ofSeconds(Long.parseLong(v));
+    }
+
+    /** Weighted request mix, e.g. "analyze=80,scan=20". */
+    record Mix(String[] names, int[] upTo, int total) {
+        static Mix parse(String spec) {
+            String[] parts = spec.split(",");
+            String[] names = new String[parts.length];
+            int[] upTo = new int[parts.length];
+            int total = 0;
+            for (int i = 0; i < parts.length; i++) {
+                String[] kv = parts[i].strip().split("=");
+                names[i] = kv[0];
+                if (!names[i].equals("analyze") && !names[i].equals("scan")) {
+                    throw new IllegalArgumentException("unknown endpoint in --mix: " + names[i]);
+                }
+                total += Integer.parseInt(kv[1]);
+                upTo[i] = total;
+            }
+            return new Mix(names, upTo, total);
+        }
+
+        String pick(int roll) {
+            for (int i = 0; i < upTo.length; i++) if (roll < upTo[i]) return names[i];
+            return names[names.length - 1];
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.weblinkshield.perf;
+
+import org.openjdk.jmh.annotations.*;
+import org.weblinkshield.core.normalize.UrlNormalizer;
+import org.weblinkshield.core.rules.RulesEngine;
+import org.weblinkshield.core.rules.UrlFeatures;
+import org.weblinkshield.data.entity.HostIntel;
+import org.weblinkshield.data.entity.Verdict;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rule evaluation on canonical URLs, with no intel (listed / unavailable) and with stub intel
+ * for every host. score() is what analyze runs; scoreOnly() and classify() are the
+ * allocation-free paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RulesEngineBenchmark {
+
+    @Param({Corpus.BENIGN, Corpus.SUSPICIOUS})
+    public String corpus;
+
+    @Param({"none", "stub"})
+    public String intel;
+
+    private final RulesEngine rules = new RulesEngine();
+    private final UrlFeatures scratch = new UrlFeatures();
+    private String[] urls;
+    private HostIntel[] intelByUrl;
+    private int next;
+
+    @Setup
+    public void load() {
+        urls = Corpus.canon(corpus);
+        intelByUrl = new HostIntel[urls.length];
+        if (intel.equals("stub")) {
+            StubIntelCollector collector = new StubIntelCollector();
+            for (int i = 0; i < urls.length; i++) {
+                intelByUrl[i] = collector.collect(UrlNormalizer.host(urls[i]));
+            }
+        }
+    }
+
+    private int advance() {
+        int i = next;
+        if (++next == urls.length) next = 0;
+        return i;
+    }
+
+    @Benchmark
+    public List<RulesEngine.Hit> score() {
+        int i = advance();
+        List<RulesEngine.Hit> hits = rules.newHits();
+        rules.score(urls[i], intelByUrl[i], hits);
+        return hits;
+    }
+
+    @Benchmark
+    public int scoreOnly() {
+        int i = advance();
+        return rules.scoreOnly(urls[i], intelByUrl[i], scratch);
+    }
+
+    @Benchmark
+    public Verdict.Status classify() {
+        int i = advance();
+        return rules.classify(urls[i], intelByUrl[i], scratch);
+    }
+}
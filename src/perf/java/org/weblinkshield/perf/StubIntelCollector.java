@@ -0,0 +1,39 @@
+package org.weblinkshield.perf;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.weblinkshield.core.intel.IntelCollector;
+import org.weblinkshield.core.normalize.PublicSuffixList;
+import org.weblinkshield.data.entity.HostIntel;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Network-free {@link IntelCollector}: intel is derived from the host name, so repeated runs
+ * see the same mix of established, young and unreachable hosts without DNS or TLS traffic.
+ */
+public class StubIntelCollector extends IntelCollector {
+
+    public StubIntelCollector() {
+        super(null, null, null, Duration.ZERO, new SimpleMeterRegistry());
+    }
+
+    @Override
+    public HostIntel collect(String host) {
+        HostIntel hi = new HostIntel();
+        hi.setDomain(host);
+        hi.setTld(PublicSuffixList.get().publicSuffix(host));
+        fill(hi, host.hashCode());
+        hi.setFetchedAt(Instant.now());
+        return hi;
+    }
+
+    /** 1 in 10 unreachable, 2 in 10 with a young certificate, the rest established. */
+    private static void fill(HostIntel hi, int seed) {
+        int bucket = Math.floorMod(seed, 10);
+        if (bucket == 0) return;
+        hi.setIp("192.0.2." + (1 + Math.floorMod(seed >> 4, 254)));
+        hi.setTlsAgeDays(bucket <= 2 ? Math.floorMod(seed >> 12, 30) : 30 + Math.floorMod(seed >> 12, 900));
+        hi.setTlsIssuer("CN=Stub CA, O=Weblink Shield Benchmarks");
+    }
+}
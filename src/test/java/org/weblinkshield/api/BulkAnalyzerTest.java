@@ -0,0 +1,119 @@
+package org.weblinkshield.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.weblinkshield.core.service.AnalysisService;
+import org.weblinkshield.core.service.VerdictResponse;
+import org.weblinkshield.data.entity.Verdict;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BulkAnalyzerTest {
+
+    private final AnalysisService analysis = mock(AnalysisService.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<List<String>> chunks = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    /** Answers each URL with a safe verdict; earlier chunks take longer, so they finish out of order. */
+    private void answerSafe(String failOn) {
+        when(analysis.analyzeBatch(anyList())).thenAnswer(inv -> {
+            List<String> urls = List.copyOf(inv.getArgument(0));
+            int n = chunks.size();
+            chunks.add(urls);
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(Math.max(0, 40 - 10 * n));
+                if (failOn != null && urls.contains(failOn)) throw new IllegalStateException("db down");
+                return urls.stream()
+                        .map(u -> new VerdictResponse(u, 0, List.of(), Verdict.Status.safe, Verdict.ClassLabel.benign))
+                        .toList();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+    }
+
+    private List<JsonNode> run(BulkAnalyzer bulk, String input) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulk.run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+        ObjectMapper om = new ObjectMapper();
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) lines.add(om.readTree(line));
+        return lines;
+    }
+
+    private BulkAnalyzer bulk(int chunkSize, int maxInFlight) {
+        return new BulkAnalyzer(analysis, registry, chunkSize, maxInFlight, Duration.ofHours(1));
+    }
+
+    @Test
+    void chunksTheInputAndAnswersInInputOrder() throws Exception {
+        answerSafe(null);
+        StringBuilder in = new StringBuilder();
+        for (int i = 0; i < 10; i++) in.append("http://h").append(i).append(".example/\n");
+
+        List<JsonNode> out = run(bulk(3, 2), in.toString());
+
+        assertEquals(List.of(3, 3, 3, 1), chunks.stream().map(List::size).toList());
+        assertTrue(maxRunning.get() <= 2, "at most max-in-flight chunks at once: " + maxRunning.get());
+        assertEquals(10, out.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("http://h" + i + ".example/", out.get(i).get("url").asText());
+            assertEquals("safe", out.get(i).get("verdict").asText());
+        }
+        assertEquals(10.0, registry.get("weblinkshield.bulk.urls").counter().count());
+        assertEquals(0.0, registry.get("weblinkshield.bulk.streams").gauge().value());
+    }
+
+    @Test
+    void acceptsBareUrlsJsonStringsAndObjectsAndSkipsBlankLines() throws Exception {
+        answerSafe(null);
+        String in = """
+                http://bare.example/a
+
+                "http://string.example/b"
+                   {"url": "http://object.example/c", "tag": 1}
+                {not json
+                """;
+
+        List<JsonNode> out = run(bulk(500, 4), in);
+
+        assertEquals(List.of(List.of("http://bare.example/a", "http://string.example/b",
+                "http://object.example/c", "{not json")), chunks);
+        assertEquals(4, out.size());
+        assertTrue(out.stream().allMatch(r -> "safe".equals(r.path("verdict").asText())));
+    }
+
+    @Test
+    void aFailedChunkAnswersItsUrlsWithErrorsAndTheStreamGoesOn() throws Exception {
+        answerSafe("http://b.example/");
+
+        List<JsonNode> out = run(bulk(2, 2), "http://a.example/\nhttp://b.example/\nhttp://c.example/\n");
+
+        assertEquals(3, out.size());
+        assertEquals("http://a.example/", out.get(0).get("url").asText());
+        assertEquals("Analysis failed", out.get(0).get("error").asText());
+        assertNull(out.get(0).get("verdict"));
+        assertEquals("Analysis failed", out.get(1).get("error").asText());
+        assertEquals("http://c.example/", out.get(2).get("url").asText());
+        assertEquals("safe", out.get(2).get("verdict").asText());
+        assertEquals(1.0, registry.get("weblinkshield.bulk.failed.chunks").counter().count());
+        assertEquals(3.0, registry.get("weblinkshield.bulk.urls").counter().count());
+    }
+}
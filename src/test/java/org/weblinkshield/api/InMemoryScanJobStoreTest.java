@@ -0,0 +1,78 @@
+package org.weblinkshield.api;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryScanJobStoreTest {
+
+    @Test
+    void evictionTellsSubscribers() {
+        var store = new InMemoryScanJobStore(new SimpleMeterRegistry(), Duration.ofMinutes(30), 1, DataSize.ofMegabytes(1));
+        ScanJobStore.Job running = store.create("https://a.example/");
+        List<String> seen = new CopyOnWriteArrayList<>();
+        store.subscribe(running.id, new ScanJobStore.Listener() {
+            @Override public void changed(ScanJobStore.Job job) { seen.add("changed@" + job.version); }
+            @Override public void removed(ScanJobStore.Job job) { seen.add("removed " + job.id); }
+        });
+        store.update(running);
+
+        store.create("https://b.example/"); // over max-entries: the running job goes
+        assertNull(store.get(running.id));
+        assertEquals(List.of("changed@1", "removed " + running.id), seen);
+    }
+
+    @Test
+    void finishedJobsGoBeforeRunningOnesHoweverRecentlyUsed() {
+        var registry = new SimpleMeterRegistry();
+        var store = new InMemoryScanJobStore(registry, Duration.ofMinutes(30), 3, DataSize.ofMegabytes(1));
+        ScanJobStore.Job running = store.create("https://running.example/");
+        ScanJobStore.Job done = store.create("https://done.example/");
+        done.status = ScanJobStore.Job.Status.DONE;
+        store.update(done);
+        store.get(done.id); // the finished job is now the most recently used
+
+        ScanJobStore.Job c = store.create("https://c.example/");
+        store.create("https://d.example/"); // over max-entries
+
+        assertNull(store.get(done.id));
+        assertNotNull(store.get(running.id));
+        assertEquals(1.0, registry.get("weblinkshield.scan.jobs.evicted").tag("cause", "size").counter().count());
+        assertEquals(0.0, registry.get("weblinkshield.scan.jobs.evicted").tag("cause", "running").counter().count());
+
+        store.create("https://e.example/"); // no finished job left: the least recently used running one goes
+        assertNull(store.get(c.id));
+        assertEquals(3, store.size());
+        assertNotNull(store.get(running.id));
+        assertEquals(1.0, registry.get("weblinkshield.scan.jobs.evicted").tag("cause", "running").counter().count());
+        store.shutdown();
+    }
+
+    @Test
+    void anIdleStoreStillExpiresFinishedJobs() throws Exception {
+        var registry = new SimpleMeterRegistry();
+        var store = new InMemoryScanJobStore(registry, Duration.ofMillis(50), 100, DataSize.ofMegabytes(1));
+        ScanJobStore.Job job = store.create("https://a.example/");
+        List<String> seen = new CopyOnWriteArrayList<>();
+        store.subscribe(job.id, new ScanJobStore.Listener() {
+            @Override public void changed(ScanJobStore.Job j) {}
+            @Override public void removed(ScanJobStore.Job j) { seen.add("removed"); }
+        });
+        job.status = ScanJobStore.Job.Status.DONE;
+        store.update(job);
+
+        for (int i = 0; i < 300 && seen.isEmpty(); i++) Thread.sleep(10); // no store calls meanwhile
+        assertEquals(List.of("removed"), seen); // told after the sweep has dropped it
+        assertEquals(0, store.size());
+        assertEquals(0, store.bytes());
+        assertEquals(1.0, registry.get("weblinkshield.scan.jobs.evicted").tag("cause", "expired").counter().count());
+        store.shutdown();
+    }
+}
@@ -0,0 +1,147 @@
+package org.weblinkshield.api;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.weblinkshield.api.ScanJobStore.Job;
+import org.weblinkshield.core.limit.Bulkhead;
+import org.weblinkshield.data.repo.ScanJobRepo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Two stores over one H2 (MySQL mode) scan_job table stand in for two nodes. */
+@DataJpaTest(showSql = false, properties = {
+        "spring.datasource.url=jdbc:h2:mem:scanjobs;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=VALUE",
+        "spring.datasource.username=sa", "spring.datasource.password="})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the stores' own pollers must see every write
+class JdbcScanJobStoreTest {
+
+    @Autowired ScanJobRepo repo;
+    private final List<JdbcScanJobStore> stores = new ArrayList<>();
+
+    @BeforeEach
+    void clean() { repo.deleteAll(); }
+
+    @AfterEach
+    void stop() { stores.forEach(JdbcScanJobStore::shutdown); }
+
+    private JdbcScanJobStore node(Duration retention, Duration staleAfter) {
+        JdbcScanJobStore store = new JdbcScanJobStore(repo, new Bulkhead("db", 2, new SimpleMeterRegistry()),
+                retention, staleAfter, Duration.ofMillis(20));
+        stores.add(store);
+        return store;
+    }
+
+    private static void await(BooleanSupplier cond) throws InterruptedException {
+        for (int i = 0; i < 200 && !cond.getAsBoolean(); i++) Thread.sleep(10);
+        assertTrue(cond.getAsBoolean());
+    }
+
+    /** Records "status@version" per change and "removed" once purged. */
+    private static List<String> record(ScanJobStore store, String jobId) {
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+        store.subscribe(jobId, new ScanJobStore.Listener() {
+            @Override public void changed(Job job) { seen.add(job.status + "@" + job.version); }
+            @Override public void removed(Job job) { seen.add("removed"); }
+        });
+        return seen;
+    }
+
+    @Test
+    void createUpdateAndGet() {
+        JdbcScanJobStore store = node(Duration.ofMinutes(30), Duration.ofMinutes(5));
+        Job job = store.create("https://a.example/");
+
+        Job read = store.get(job.id);
+        assertEquals(Job.Status.QUEUED, read.status);
+        assertEquals("https://a.example/", read.url);
+        assertEquals(0, read.version);
+
+        job.status = Job.Status.CORE_RUNNING;
+        job.payloadJson = "{\"score\":5}";
+        store.update(job);
+        job.status = Job.Status.DONE;
+        store.update(job);
+
+        read = store.get(job.id);
+        assertEquals(Job.Status.DONE, read.status);
+        assertEquals("{\"score\":5}", read.payloadJson);
+        assertEquals(2, read.version);
+        assertNotNull(read.finished);
+        assertNull(store.get("no-such-job"));
+    }
+
+    @Test
+    void changesOnOneNodeReachSubscribersOnAnother() throws Exception {
+        JdbcScanJobStore a = node(Duration.ofMinutes(30), Duration.ofMinutes(5));
+        JdbcScanJobStore b = node(Duration.ofMinutes(30), Duration.ofMinutes(5));
+        Job job = a.create("https://a.example/");
+        List<String> local = record(a, job.id);
+        List<String> remote = record(b, job.id);
+
+        job.status = Job.Status.CORE_RUNNING;
+        a.update(job);
+        await(() -> remote.contains("CORE_RUNNING@1"));
+        job.status = Job.Status.DONE;
+        a.update(job);
+        await(() -> remote.contains("DONE@2"));
+
+        assertEquals(List.of("CORE_RUNNING@1", "DONE@2"), local);
+        assertEquals(List.of("CORE_RUNNING@1", "DONE@2"), remote);
+    }
+
+    @Test
+    void heartbeatsKeepARunningJobAlive() throws Exception {
+        JdbcScanJobStore a = node(Duration.ofMinutes(30), Duration.ofMillis(150));
+        Job job = a.create("https://a.example/");
+        job.status = Job.Status.CORE_RUNNING;
+        a.update(job);
+
+        Thread.sleep(400);
+        a.purge();
+        assertEquals(Job.Status.CORE_RUNNING, a.get(job.id).status);
+    }
+
+    @Test
+    void jobsOfACrashedNodeAreFailedThenPurged() throws Exception {
+        JdbcScanJobStore crashed = node(Duration.ofMinutes(30), Duration.ofMinutes(5));
+        JdbcScanJobStore b = node(Duration.ofMillis(300), Duration.ofMillis(100));
+        Job job = crashed.create("https://a.example/");
+        job.status = Job.Status.CORE_RUNNING;
+        crashed.update(job);
+        crashed.shutdown(); // no more heartbeats
+        List<String> remote = record(b, job.id);
+        await(() -> remote.contains("CORE_RUNNING@1"));
+
+        Thread.sleep(150);
+        b.purge();
+        Job failed = b.get(job.id);
+        assertEquals(Job.Status.ERROR, failed.status);
+        assertEquals(JdbcScanJobStore.ABANDONED, failed.payloadJson);
+        assertNotNull(failed.finished);
+        await(() -> remote.contains("ERROR@2"));
+
+        job.status = Job.Status.DONE; // the pipeline on the old node comes back: too late
+        crashed.update(job);
+        assertEquals(Job.Status.ERROR, b.get(job.id).status);
+
+        Thread.sleep(350);
+        b.purge();
+        assertNull(b.get(job.id));
+        await(() -> remote.contains("removed"));
+        assertEquals(List.of("CORE_RUNNING@1", "ERROR@2", "removed"), remote); // first poll: current state
+    }
+}
@@ -0,0 +1,198 @@
+package org.weblinkshield.api;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanEventHubTest {
+
+    /** Job store stub: listeners are called on the updating thread, like the real stores. */
+    static final class StubStore implements ScanJobStore {
+        final Map<String, Job> jobs = new ConcurrentHashMap<>();
+        final Map<String, List<Listener>> listeners = new ConcurrentHashMap<>();
+
+        @Override public Job create(String url) {
+            Job j = new Job(UUID.randomUUID().toString(), url);
+            jobs.put(j.id, j);
+            return j;
+        }
+        @Override public Job get(String id) { return jobs.get(id); }
+        @Override public void update(Job j) {
+            j.version++;
+            listeners.getOrDefault(j.id, List.of()).forEach(l -> l.changed(j));
+        }
+        @Override public Subscription subscribe(String jobId, Listener listener) {
+            listeners.computeIfAbsent(jobId, k -> new CopyOnWriteArrayList<>()).add(listener);
+            return () -> listeners.get(jobId).remove(listener);
+        }
+    }
+
+    /** Emitter that records the ids of the snapshot events sent to it; a gate makes it a slow client. */
+    static final class Recorder extends SseEmitter {
+        private static final Pattern ID = Pattern.compile("id:(\\d+)");
+        final List<Long> ids = new CopyOnWriteArrayList<>();
+        final CountDownLatch gate;
+        volatile boolean completed;
+
+        Recorder(CountDownLatch gate) {
+            super(0L);
+            this.gate = gate;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            String text = builder.build().stream().map(d -> d.getData().toString()).collect(Collectors.joining());
+            Matcher m = ID.matcher(text);
+            if (m.find()) ids.add(Long.parseLong(m.group(1))); // heartbeats carry no id
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+            super.complete();
+        }
+    }
+
+    private final StubStore store = new StubStore();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<Recorder> emitters = new CopyOnWriteArrayList<>();
+    private volatile CountDownLatch nextGate = new CountDownLatch(0);
+    private ScanEventHub hub;
+
+    private ScanEventHub hub(int bufferSize) {
+        hub = new ScanEventHub(store, registry, bufferSize, 32, Duration.ofMinutes(2), Duration.ofHours(1)) {
+            @Override
+            SseEmitter newEmitter() {
+                Recorder r = new Recorder(nextGate);
+                nextGate = new CountDownLatch(0);
+                emitters.add(r);
+                return r;
+            }
+        };
+        return hub;
+    }
+
+    @AfterEach
+    void stop() {
+        if (hub != null) hub.shutdown();
+    }
+
+    private static void advance(ScanJobStore store, ScanJobStore.Job job, ScanJobStore.Job.Status status) {
+        job.status = status;
+        store.update(job);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) Thread.sleep(10);
+        assertTrue(condition.getAsBoolean(), "timed out");
+    }
+
+    @Test
+    void fansOutEveryChangeToEverySubscriber() throws Exception {
+        ScanEventHub hub = hub(16);
+        ScanJobStore.Job job = store.create("https://a.example/");
+        hub.track(job);
+        hub.subscribe(job, null);
+        hub.subscribe(job, null);
+
+        advance(store, job, ScanJobStore.Job.Status.CORE_RUNNING);
+        advance(store, job, ScanJobStore.Job.Status.DONE);
+
+        for (Recorder r : emitters) {
+            await(() -> r.completed);
+            assertEquals(List.of(0L, 1L, 2L), r.ids);
+        }
+        assertEquals(1, store.listeners.get(job.id).size()); // one store subscription per job, not per client
+    }
+
+    @Test
+    void dropsASlowSubscriberWithoutHoldingUpTheOthers() throws Exception {
+        ScanEventHub hub = hub(2);
+        ScanJobStore.Job job = store.create("https://a.example/");
+        hub.track(job);
+        CountDownLatch stalled = new CountDownLatch(1);
+        nextGate = stalled;
+        hub.subscribe(job, null);
+        hub.subscribe(job, null);
+        Recorder slow = emitters.get(0), fast = emitters.get(1);
+
+        for (int i = 1; i <= 5; i++) {
+            advance(store, job, ScanJobStore.Job.Status.CORE_RUNNING);
+            long version = i;
+            await(() -> fast.ids.contains(version)); // a client that keeps up
+        }
+        advance(store, job, ScanJobStore.Job.Status.DONE);
+
+        await(() -> fast.completed);
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L), fast.ids);
+        assertTrue(slow.completed);
+        assertEquals(1.0, registry.counter("weblinkshield.sse.dropped").count());
+        stalled.countDown();
+    }
+
+    @Test
+    void reconnectGetsExactlyTheMissedEvents() throws Exception {
+        ScanEventHub hub = hub(16);
+        ScanJobStore.Job job = store.create("https://a.example/");
+        hub.track(job);
+        for (int i = 0; i < 3; i++) advance(store, job, ScanJobStore.Job.Status.CORE_RUNNING);
+
+        hub.subscribe(job, 1L);
+        Recorder r = emitters.get(0);
+        await(() -> r.ids.size() == 2);
+        advance(store, job, ScanJobStore.Job.Status.DONE);
+        await(() -> r.completed);
+        assertEquals(List.of(2L, 3L, 4L), r.ids);
+        assertEquals(2.0, registry.counter("weblinkshield.sse.replayed").count());
+    }
+
+    @Test
+    void reconnectAfterTheFinalEventEndsTheStreamRightAway() throws Exception {
+        ScanEventHub hub = hub(16);
+        ScanJobStore.Job job = store.create("https://a.example/");
+        hub.track(job);
+        advance(store, job, ScanJobStore.Job.Status.CORE_RUNNING);
+        advance(store, job, ScanJobStore.Job.Status.DONE);
+
+        hub.subscribe(job, 2L); // the topic is still in its replay window
+        Recorder r = emitters.get(0);
+        await(() -> r.completed);
+        assertEquals(List.of(), r.ids);
+    }
+
+    @Test
+    void removedJobEndsOpenStreams() throws Exception {
+        ScanEventHub hub = hub(16);
+        ScanJobStore.Job job = store.create("https://a.example/");
+        hub.track(job);
+        hub.subscribe(job, null);
+        advance(store, job, ScanJobStore.Job.Status.CORE_RUNNING);
+        Recorder r = emitters.get(0);
+        await(() -> r.ids.size() == 2);
+
+        store.listeners.get(job.id).forEach(l -> l.removed(job)); // evicted while running
+        assertTrue(r.completed);
+        assertTrue(store.listeners.get(job.id).isEmpty());
+    }
+}
@@ -0,0 +1,49 @@
+package org.weblinkshield.core.intel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.weblinkshield.core.limit.Bulkhead;
+import org.weblinkshield.data.entity.HostIntel;
+import org.weblinkshield.data.repo.HostIntelRepo;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HostIntelServiceTest {
+
+    private final HostIntelRepo repo = mock(HostIntelRepo.class);
+    private final IntelCollector collector = mock(IntelCollector.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final HostIntelService service = new HostIntelService(repo, collector, Executors.newVirtualThreadPerTaskExecutor(),
+            new Bulkhead("network", 4, registry), new Bulkhead("db", 2, registry), registry, Duration.ofHours(24), Duration.ofMinutes(10), 100);
+
+    private static HostIntel probed(String host, String ip) {
+        HostIntel hi = new HostIntel();
+        hi.setDomain(host);
+        hi.setIp(ip);
+        return hi;
+    }
+
+    @Test
+    void probesTheRealHostNotItsSite() {
+        when(repo.findByDomain(anyString())).thenReturn(Optional.empty());
+        when(repo.findByDomainIn(any())).thenReturn(List.of());
+        when(repo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(collector.collect("example.co.uk")).thenReturn(probed("example.co.uk", "192.0.2.1"));
+        when(collector.collect("paypal-login.example.co.uk")).thenReturn(probed("paypal-login.example.co.uk", null));
+
+        assertEquals("192.0.2.1", service.lookup("example.co.uk").getIp());
+        Map<String, HostIntel> all = service.lookupAll(List.of("example.co.uk", "paypal-login.example.co.uk"));
+        assertNull(all.get("paypal-login.example.co.uk").getIp()); // does not resolve, whatever the apex does
+        assertEquals("192.0.2.1", all.get("example.co.uk").getIp());
+        verify(collector).collect("example.co.uk"); // cached since
+        verify(collector).collect("paypal-login.example.co.uk");
+    }
+}
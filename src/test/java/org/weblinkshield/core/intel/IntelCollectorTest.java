@@ -0,0 +1,79 @@
+package org.weblinkshield.core.intel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.weblinkshield.core.rules.RulesEngine;
+import org.weblinkshield.data.entity.HostIntel;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntelCollectorTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final RulesEngine rules = new RulesEngine();
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    private IntelCollector collector(DnsProbe dns, TlsProbe tls) {
+        return new IntelCollector(executor, dns, tls, Duration.ofMillis(100), new SimpleMeterRegistry());
+    }
+
+    /** A probe that is still running when the budget expires. */
+    private <T> T hang() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private List<String> hits(HostIntel hi) {
+        List<RulesEngine.Hit> hits = rules.newHits();
+        rules.score("https://slow.example.com/", hi, hits);
+        return hits.stream().map(h -> h.name).toList();
+    }
+
+    @Test
+    void probesCutOffByTheBudgetDoNotScoreAsMissing() {
+        HostIntel hi = collector(host -> hang(), (host, timeout) -> hang()).collect("slow.example.com");
+
+        assertFalse(hi.isDnsProbed());
+        assertFalse(hi.isTlsProbed());
+        assertTrue(hi.isPartial());
+        List<String> hits = hits(hi);
+        assertFalse(hits.contains("no_tls"), hits.toString());
+        assertFalse(hits.contains("no_dns"), hits.toString());
+    }
+
+    @Test
+    void onlyTheUnfinishedProbeIsUnavailable() {
+        HostIntel hi = collector(host -> null, (host, timeout) -> hang()).collect("slow.example.com");
+
+        assertTrue(hi.isDnsProbed());
+        assertFalse(hi.isTlsProbed());
+        List<String> hits = hits(hi);
+        assertTrue(hits.contains("no_dns"), hits.toString()); // DNS answered: no record
+        assertFalse(hits.contains("no_tls"), hits.toString());
+    }
+
+    @Test
+    void probesThatFinishEmptyHandedStillScore() {
+        HostIntel hi = collector(host -> null, (host, timeout) -> null).collect("dead.example.com");
+
+        assertFalse(hi.isPartial());
+        assertEquals(List.of("no_tls", "no_dns"), hits(hi));
+    }
+}
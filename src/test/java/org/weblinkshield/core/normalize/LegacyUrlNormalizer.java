@@ -0,0 +1,34 @@
+package org.weblinkshield.core.normalize;
+
+import java.net.IDN;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/** The java.net.URI based canonicalizer UrlNormalizer replaced; kept to compare against. */
+final class LegacyUrlNormalizer {
+    private LegacyUrlNormalizer() {}
+
+    public static String canon(String raw) {
+        try {
+            URI u = new URI(raw.trim());
+            String scheme = Optional.ofNullable(u.getScheme()).orElse("http").toLowerCase();
+            String host = IDN.toASCII(Optional.ofNullable(u.getHost()).orElse("")).toLowerCase();
+            if (host.endsWith(".")) host = host.substring(0, host.length() - 1); // fully-qualified form
+            String path = Optional.ofNullable(u.getPath()).filter(p->!p.isEmpty()).orElse("/");
+            String query = Optional.ofNullable(u.getQuery()).orElse(null);
+
+            String base = scheme + "://" + host + path;
+            if (query == null || query.isEmpty()) return base;
+
+            // sort query params for stable canonicalization
+            String sorted = Arrays.stream(query.split("&"))
+                    .sorted()
+                    .collect(Collectors.joining("&"));
+            return base + "?" + sorted;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid URL: " + raw);
+        }
+    }
+}
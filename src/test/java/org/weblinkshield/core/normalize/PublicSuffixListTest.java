@@ -0,0 +1,44 @@
+package org.weblinkshield.core.normalize;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PublicSuffixListTest {
+
+    private final PublicSuffixList psl = PublicSuffixList.get();
+
+    @Test
+    void registrableDomains() {
+        assertEquals("example.com", psl.registrableDomain("a.b.example.com"));
+        assertEquals("example.co.uk", psl.registrableDomain("www.example.co.uk"));
+        assertEquals("example.com.au", psl.registrableDomain("shop.example.com.au"));
+        assertEquals("evil.github.io", psl.registrableDomain("login.evil.github.io"));
+        assertEquals("example.unlisted", psl.registrableDomain("x.example.unlisted")); // implicit "*" rule
+        assertNull(psl.registrableDomain("co.uk"));
+        assertNull(psl.registrableDomain("github.io"));
+        assertNull(psl.registrableDomain("127.0.0.1"));
+        assertNull(psl.registrableDomain("[::1]"));
+    }
+
+    @Test
+    void wildcardAndExceptionRules() {
+        // *.ck with !www.ck
+        assertEquals("b.a.ck", psl.registrableDomain("x.b.a.ck"));
+        assertEquals("a.ck", psl.publicSuffix("b.a.ck"));
+        assertEquals("www.ck", psl.registrableDomain("www.ck"));
+        assertEquals("ck", psl.publicSuffix("www.ck"));
+    }
+
+    @Test
+    void publicSuffixesAndUrlRegions() {
+        assertEquals("co.uk", psl.publicSuffix("example.co.uk"));
+        assertEquals("com", psl.publicSuffix("example.com"));
+        assertEquals("xn--55qx5d.cn", psl.publicSuffix("example.xn--55qx5d.cn")); // 公司.cn
+        String url = "https://www.example.co.uk/path";
+        assertEquals(url.indexOf("example"), psl.registrableStart(url, 8, url.indexOf('/', 8)));
+        assertEquals("example.co.uk", UrlNormalizer.site("www.example.co.uk"));
+        assertEquals("co.uk", UrlNormalizer.site("co.uk"));
+        assertEquals("https://example.com/", UrlNormalizer.canon("https://EXAMPLE.com./"));
+    }
+}
@@ -0,0 +1,64 @@
+package org.weblinkshield.core.normalize;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlNormalizerTest {
+
+    private record Golden(String input, String expected, boolean legacySame) {}
+
+    private static List<Golden> corpus() throws Exception {
+        List<Golden> rows = new ArrayList<>();
+        try (var r = new BufferedReader(new InputStreamReader(Objects.requireNonNull(
+                UrlNormalizerTest.class.getResourceAsStream("/normalize/canon-golden.tsv")), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] f = line.split("\t", -1);
+                rows.add(new Golden(f[0], f[1], f[2].equals("same")));
+            }
+        }
+        return rows;
+    }
+
+    private static String canonOrInvalid(String raw, boolean legacy) {
+        try {
+            return legacy ? LegacyUrlNormalizer.canon(raw) : UrlNormalizer.canon(raw);
+        } catch (IllegalArgumentException e) {
+            return "!invalid";
+        }
+    }
+
+    @Test
+    void matchesGoldenCorpus() throws Exception {
+        for (Golden g : corpus()) {
+            assertEquals(g.expected(), canonOrInvalid(g.input(), false), g.input());
+            // "same" rows pin compatibility with the old canonicalizer; "fixed" rows must really differ
+            assertEquals(g.legacySame(), g.expected().equals(canonOrInvalid(g.input(), true)), g.input());
+        }
+    }
+
+    @Test
+    void canonicalFormIsAFixedPoint() throws Exception {
+        for (Golden g : corpus()) {
+            if (g.expected().startsWith("!")) continue;
+            assertEquals(g.expected(), UrlNormalizer.canon(g.expected()), g.input());
+        }
+    }
+
+    @Test
+    void extractsHostFromCanon() {
+        assertEquals("evil.example.com", UrlNormalizer.host("http://www.paypal.com@evil.example.com/login"));
+        assertEquals("example.com", UrlNormalizer.host("https://example.com:8443/x?y=1"));
+        assertEquals("[2001:db8::1]", UrlNormalizer.host("https://[2001:db8::1]:8443/x"));
+        assertEquals("example.com", UrlNormalizer.host("https://example.com?q"));
+    }
+}
@@ -0,0 +1,44 @@
+package org.weblinkshield.core.reputation;
+
+import org.junit.jupiter.api.Test;
+import org.weblinkshield.core.normalize.UrlNormalizer;
+import org.weblinkshield.util.Sha256;
+
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReputationIndexTest {
+
+    @Test
+    void bloomFilterHasNoFalseNegatives() {
+        ReputationIndex.Builder b = new ReputationIndex.Builder();
+        for (int i = 0; i < 100_000; i++) b.addHost("host" + i + ".example");
+        ReputationIndex idx = b.build();
+        assertEquals(100_000, idx.size());
+        for (int i = 0; i < 100_000; i++) assertTrue(idx.matchesHost("host" + i + ".example"));
+        int wrong = 0;
+        for (int i = 0; i < 100_000; i++) if (idx.matchesHost("other" + i + ".example")) wrong++;
+        assertEquals(0, wrong); // 64-bit keys: bloom false positives are still confirmed by the key array
+    }
+
+    @Test
+    void feedEntriesMatchHostsParentsAndUrls() {
+        ReputationIndex.Builder b = new ReputationIndex.Builder();
+        ReputationService.addEntry(b, "# comment");
+        ReputationService.addEntry(b, "0.0.0.0 Evil.Example.");
+        ReputationService.addEntry(b, "https://Ex.com/phish?b=2&a=1 # trailing comment");
+        String canon = UrlNormalizer.canon("http://ex.com/hashed");
+        ReputationService.addEntry(b, HexFormat.of().formatHex(Sha256.of(canon)));
+        ReputationService.addEntry(b, "com");
+        ReputationIndex idx = b.build();
+
+        assertTrue(idx.matchesHost("evil.example"));
+        assertTrue(idx.matchesHost("login.evil.example"));
+        assertFalse(idx.matchesHost("notevil.example"));
+        assertTrue(idx.matchesUrl(UrlNormalizer.canon("https://ex.com/phish?a=1&b=2")));
+        assertTrue(idx.matchesUrl(canon));
+        assertFalse(idx.matchesUrl(UrlNormalizer.canon("https://ex.com/other")));
+        assertFalse(idx.matchesHost("anything.com")); // parent walk stops before the bare TLD
+    }
+}
@@ -0,0 +1,48 @@
+package org.weblinkshield.core.reputation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReputationSnapshotTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void mappedLookupsMatchTheBuiltKeys() throws Exception {
+        SplittableRandom rnd = new SplittableRandom(42);
+        long[] block = new long[50_000], allow = new long[5_000];
+        for (int i = 0; i < block.length; i++) block[i] = rnd.nextLong();
+        for (int i = 0; i < allow.length; i++) allow[i] = rnd.nextLong();
+        allow[0] = block[0]; // on both lists
+        block[1] = block[2]; // duplicate
+        block[3] = -1L;      // unsigned max
+        block[4] = 0L;
+
+        Path file = dir.resolve("rep.snap");
+        ReputationSnapshotBuilder.build(file, block, allow);
+        ReputationSnapshot snap = ReputationSnapshot.open(file);
+
+        assertEquals(block.length - 1, snap.blocked().size());
+        assertEquals(allow.length, snap.allowed().size());
+        for (long k : block) assertTrue(snap.blocked().contains(k));
+        for (long k : allow) assertTrue(snap.allowed().contains(k));
+        assertTrue(snap.allowed().contains(block[0]));
+        assertFalse(snap.allowed().contains(block[5]));
+        for (int i = 0; i < 10_000; i++) assertFalse(snap.blocked().contains(rnd.nextLong()));
+    }
+
+    @Test
+    void hostEntriesMatchParentsThroughTheSnapshot() throws Exception {
+        Path file = dir.resolve("hosts.snap");
+        ReputationSnapshotBuilder.build(file, new long[] { ReputationKeys.hostKey("evil.example") }, new long[0]);
+        ReputationSnapshot snap = ReputationSnapshot.open(file);
+        assertTrue(snap.blocked().matchesHost("a.b.evil.example"));
+        assertFalse(snap.blocked().matchesHost("example"));
+        assertFalse(snap.allowed().matchesHost("evil.example"));
+    }
+}
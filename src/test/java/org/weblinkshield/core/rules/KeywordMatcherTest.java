@@ -0,0 +1,47 @@
+package org.weblinkshield.core.rules;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeywordMatcherTest {
+
+    private static List<String> matches(KeywordMatcher m, String text) {
+        List<String> out = new ArrayList<>();
+        m.match(text, 0, text.length(), (term, start, end) -> {
+            assertEquals(m.term(term), text.substring(start, end).toLowerCase());
+            out.add(m.term(term) + "@" + start);
+            return true;
+        });
+        return out;
+    }
+
+    @Test
+    void findsOverlappingTermsInOnePass() {
+        KeywordMatcher m = KeywordMatcher.of(List.of("he", "she", "his", "hers"));
+        assertEquals(List.of("she@1", "he@2", "hers@2"), matches(m, "ushers"));
+        assertEquals(List.of("his@0", "she@2", "he@3"), matches(m, "HiShE"));
+        assertEquals(List.of(), matches(m, "xyz"));
+    }
+
+    @Test
+    void scalesToLargeDictionaries() {
+        List<String> terms = new ArrayList<>(IntStream.range(0, 50_000).mapToObj(i -> "term" + i + "x").toList());
+        terms.add("paypal");
+        KeywordMatcher m = KeywordMatcher.of(terms);
+        assertEquals(List.of("paypal@7", "term49999x@18"), matches(m, "http://PayPal.com/term49999x"));
+    }
+
+    @Test
+    void stopsWhenSinkSaysSo() {
+        KeywordMatcher m = KeywordMatcher.of(List.of("a"));
+        int[] seen = {0};
+        m.match("aaaa", 0, 4, (t, s, e) -> ++seen[0] < 2);
+        assertEquals(2, seen[0]);
+        assertThrows(IllegalArgumentException.class, () -> KeywordMatcher.of(List.of("Login", "login")));
+    }
+}
@@ -0,0 +1,49 @@
+package org.weblinkshield.core.rules;
+
+import org.junit.jupiter.api.Test;
+import org.weblinkshield.data.entity.HostIntel;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReasonCodecTest {
+
+    private final RulesEngine rules = new RulesEngine();
+
+    private static String explain(List<RulesEngine.Hit> hits) {
+        return hits.stream().map(h -> h.name + "/" + h.weight + "/" + h.reason).toList().toString();
+    }
+
+    @Test
+    void roundTripsRuleAndKeywordHits() {
+        HostIntel hi = new HostIntel();
+        hi.setTld("tk");
+        hi.setTlsAgeDays(3);
+        List<RulesEngine.Hit> hits = rules.newHits();
+        rules.score("http://paypal.secure-login.example.tk/verify", hi, hits);
+
+        String stored = ReasonCodec.encode(hits);
+        assertFalse(stored.contains("reason"), stored);
+        assertTrue(stored.contains("\"risky_tld:20:tk\""), stored);
+        assertEquals(explain(hits), explain(ReasonCodec.decode(stored, rules.ruleSet())));
+    }
+
+    @Test
+    void decodesBuiltinsEscapesAndSpacing() {
+        List<RulesEngine.Hit> hits = List.of(RulesEngine.BLOCKLISTED, new RulesEngine.Hit("gone", 7, "x", "a\"b\\c:d"));
+        String stored = ReasonCodec.encode(hits).replace(",", ", "); // MySQL JSON columns re-format
+        List<RulesEngine.Hit> back = ReasonCodec.decode(stored, rules.ruleSet());
+        assertEquals("[blocklisted/100/URL or domain is on the blocklist, gone/7/gone: a\"b\\c:d]", explain(back));
+        assertEquals(List.of(), ReasonCodec.decode("[]", rules.ruleSet()));
+        assertEquals(List.of(), ReasonCodec.decode(null, rules.ruleSet()));
+        assertEquals("[no_dns/10/No A/AAAA record resolved]",
+                explain(ReasonCodec.decode("\"[\\\"no_dns:10\\\"]\"", rules.ruleSet()))); // as a JSON string
+    }
+
+    @Test
+    void decodesLegacyJson() {
+        String legacy = "[{\"name\":\"no_dns\",\"weight\":10,\"reason\":\"No A/AAAA record resolved\"}]";
+        assertEquals("[no_dns/10/No A/AAAA record resolved]", explain(ReasonCodec.decode(legacy, rules.ruleSet())));
+    }
+}
@@ -0,0 +1,165 @@
+package org.weblinkshield.core.rules;
+
+import org.junit.jupiter.api.Test;
+import org.weblinkshield.data.entity.HostIntel;
+import org.weblinkshield.data.entity.Verdict;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RulesEngineTest {
+
+    private final RulesEngine rules = new RulesEngine();
+
+    private static HostIntel intel(String tld, String ip, Integer tlsAgeDays) {
+        HostIntel hi = new HostIntel();
+        hi.setTld(tld);
+        hi.setIp(ip);
+        hi.setTlsAgeDays(tlsAgeDays);
+        return hi;
+    }
+
+    @Test
+    void featuresAreExtractedInOnePass() {
+        UrlFeatures f = new UrlFeatures().extract("http://user@ex.com/a/LoGiN/12345?id=678");
+        assertEquals(8, f.digits);
+        assertEquals(5, f.slashes);
+        assertTrue(f.hasAt);
+        assertTrue(f.hasLogin);
+
+        f.extract("http://ex.com/llogin");
+        assertTrue(f.hasLogin);
+        f.extract("http://ex.com/logi/n");
+        assertFalse(f.hasLogin);
+        assertFalse(f.hasAt);
+    }
+
+    @Test
+    void explainsHits() {
+        List<RulesEngine.Hit> hits = rules.newHits();
+        int score = rules.score("http://a.example.tk/login", intel("TK", "1.2.3.4", 3), hits);
+        assertEquals(45, score);
+        assertEquals(List.of("login_keyword", "risky_tld", "young_tls", "very_young_tls"),
+                hits.stream().map(h -> h.name).toList());
+        assertEquals("High-risk/free TLD: tk", hits.get(1).reason);
+    }
+
+    @Test
+    void scoreOnlyMatchesExplainedScore() {
+        UrlFeatures scratch = new UrlFeatures();
+        HostIntel[] intels = { null, intel("com", "1.2.3.4", 400), intel("xyz", null, null), intel("com", " ", 10) };
+        String[] urls = {
+                "https://example.com/",
+                "http://login.example.com/account/verify?session=1234567890123456789012345",
+                "http://evil.example.xyz/a/b/c/d/e/f/g/h/i/j?u=me@x.com",
+                "http://" + "a".repeat(210) + ".com/" + "9".repeat(45),
+                "   "
+        };
+        for (String url : urls) {
+            for (HostIntel hi : intels) {
+                int explained = rules.score(url, hi, rules.newHits());
+                assertEquals(explained, rules.scoreOnly(url, hi, scratch), url);
+            }
+        }
+    }
+
+    @Test
+    void classifyShortCircuitsToTheSameBand() {
+        UrlFeatures scratch = new UrlFeatures();
+        HostIntel[] intels = { null, intel("com", "1.2.3.4", 400), intel("tk", null, null), intel("com", "1.2.3.4", 3) };
+        String[] urls = {
+                "https://example.com/",
+                "http://login.example.com/account/verify?session=1234567890123456789012345",
+                "http://evil.example.xyz/a/b/c/d/e/f/g/h/i/j?u=me@x.com",
+                ""
+        };
+        for (String url : urls) {
+            for (HostIntel hi : intels) {
+                int score = rules.score(url, hi, rules.newHits());
+                assertEquals(rules.statusFor(score), rules.classify(url, hi, scratch), url);
+            }
+        }
+    }
+
+    @Test
+    void keywordGroupsReportEachTermOnce() {
+        HostIntel ok = intel("com", "1.2.3.4", 400);
+        List<RulesEngine.Hit> hits = rules.newHits();
+        rules.score("https://paypal.com.account-verify.example.com/verify/paypal", ok, hits);
+        assertEquals(List.of("brand_keyword", "common_phishing_term", "phishing_term"),
+                hits.stream().map(h -> h.name).toList());
+        assertEquals("Brand name 'paypal' outside its own domain", hits.get(0).reason);
+
+        // a brand on its own site is not a signal
+        hits = rules.newHits();
+        assertEquals(0, rules.score("https://www.paypal.com/", ok, hits));
+        assertEquals(0, rules.score("https://www.paypal.co.uk/", intel("co.uk", "1.2.3.4", 400), hits));
+        assertTrue(hits.isEmpty());
+        assertEquals(10, rules.score("https://paypal.evil.github.io/", ok, hits));
+    }
+
+    @Test
+    void brandKeywordsCatchCombosquatsButOnlyWholeTokens() {
+        HostIntel ok = intel("com", "1.2.3.4", 400);
+        for (String url : List.of("https://paypal-verify.com/", "https://secure-paypal.net/", "https://www.apple.com.id-check.co/",
+                "https://appleid.apple.com/paypal/")) {
+            List<RulesEngine.Hit> hits = rules.newHits();
+            rules.score(url, ok, hits);
+            assertEquals(1, hits.stream().filter(h -> h.name.equals("brand_keyword")).count(), url);
+        }
+        assertEquals(0, rules.score("https://pineapple.com/", ok, rules.newHits()));
+        assertEquals(0, rules.score("https://appleid.apple.com/support", ok, rules.newHits()));
+        assertEquals(0, rules.score("https://outlook.live.com/mail", ok, rules.newHits()));
+        assertThrows(IllegalArgumentException.class, () -> CompiledRuleSet.compile(json("""
+                {"thresholds":{"malicious":40,"suspicious":20},
+                 "keywordGroups":[{"name":"b","weight":1,"scope":"url","terms":["x"],"owners":{"x":["x.com"]}}]}
+                """)));
+    }
+
+    @Test
+    void everydayWordsInOrdinaryUrlsBarelyScore() {
+        HostIntel ok = intel("com", "1.2.3.4", 400);
+        assertEquals(2, rules.score("https://example.com/account/update", ok, rules.newHits()));
+        assertEquals(2, rules.score("https://shop.example.com/billing/invoice/confirm", ok, rules.newHits()));
+        assertEquals(0, rules.score("https://example.com/accounting/updates", ok, rules.newHits())); // whole tokens only
+        assertEquals(0, rules.score("https://example.com/passwordless", ok, rules.newHits()));
+        List<RulesEngine.Hit> hits = rules.newHits();
+        assertEquals(12, rules.score("https://example.com/account/verify/password", ok, hits));
+        assertEquals(List.of("common_phishing_term", "phishing_term", "phishing_term"),
+                hits.stream().map(h -> h.name).toList());
+    }
+
+    @Test
+    void swapsRuleSetAtomically() {
+        RulesEngine engine = new RulesEngine();
+        engine.swap(CompiledRuleSet.compile(json("""
+                {"version":"t1","thresholds":{"malicious":10,"suspicious":5},"riskyTlds":["io"],
+                 "rules":[{"name":"io","weight":10,"feature":"risky_tld","op":"true","reason":"tld {tld}"}]}
+                """)));
+        List<RulesEngine.Hit> hits = engine.newHits();
+        assertEquals(10, engine.score("https://x.io/", intel("IO", "1.1.1.1", 100), hits));
+        assertEquals("tld io", hits.get(0).reason);
+        assertEquals(Verdict.Status.malicious, engine.statusFor(10));
+        assertEquals("t1", engine.ruleSet().version());
+        assertTrue(engine.ruleSet().isRiskyTld("co.io"));
+        assertTrue(rules.ruleSet().isRiskyTld("tk"));
+        assertFalse(rules.ruleSet().isRiskyTld("co.uk"));
+    }
+
+    @Test
+    void rejectsInvalidRuleSets() {
+        assertThrows(IllegalArgumentException.class, () -> CompiledRuleSet.compile(json("""
+                {"thresholds":{"malicious":40,"suspicious":20},"rules":[{"name":"x","weight":1,"feature":"nope","op":"true"}]}
+                """)));
+        assertThrows(IllegalArgumentException.class, () -> CompiledRuleSet.compile(json("""
+                {"thresholds":{"malicious":40,"suspicious":20},"rules":[{"name":"x","weight":1,"feature":"url_length","op":"gt"}]}
+                """)));
+    }
+
+    private static ByteArrayInputStream json(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
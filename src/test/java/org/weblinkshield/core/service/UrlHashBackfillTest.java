@@ -0,0 +1,50 @@
+package org.weblinkshield.core.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.weblinkshield.core.limit.Bulkhead;
+import org.weblinkshield.data.entity.Url;
+import org.weblinkshield.data.entity.Verdict.ClassLabel;
+import org.weblinkshield.data.entity.Verdict.Status;
+import org.weblinkshield.data.repo.H2Urls;
+import org.weblinkshield.data.repo.UrlVerdictJdbcRepo.UrlVerdict;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlHashBackfillTest {
+
+    @Test
+    void hashesOldRowsAndMergesDuplicatesOfHashedOnes() throws Exception {
+        H2Urls db = new H2Urls();
+        long alone = db.insertRaw("http://alone.example/", null);
+        long stale = db.insertRaw("http://dup.example/", null);
+        db.jdbc.update("INSERT INTO verdict (url_id, verdict, class, ts) VALUES (?, 'safe', 'benign', CURRENT_TIMESTAMP)", stale);
+        db.repo.save(new UrlVerdict("http://dup.example/", null, Status.malicious, ClassLabel.phishing, 9, "[]"));
+        long fresh = db.repo.findUrls(List.of("http://dup.example/")).get("http://dup.example/").id();
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        UrlHashBackfill backfill = new UrlHashBackfill(db.repo,
+                new TransactionTemplate(new DataSourceTransactionManager(db.dataSource)),
+                new Bulkhead("db", 1, registry), registry, 1, Duration.ofMillis(10));
+        try {
+            for (int i = 0; i < 200 && !backfill.isComplete(); i++) Thread.sleep(10);
+        } finally {
+            backfill.shutdown();
+        }
+
+        assertTrue(backfill.isComplete());
+        assertTrue(db.repo.findUnhashed(10).isEmpty());
+        assertArrayEquals(Url.hash("http://alone.example/"),
+                db.jdbc.queryForObject("SELECT url_hash FROM url WHERE id = ?", byte[].class, alone));
+        assertEquals(2, db.count("url")); // the unhashed duplicate and its verdict are gone
+        assertEquals(1, db.count("verdict"));
+        assertEquals("malicious", db.verdictOf(fresh));
+        assertEquals(1.0, registry.get("weblinkshield.url.hash.backfill").tag("action", "hashed").counter().count());
+        assertEquals(1.0, registry.get("weblinkshield.url.hash.backfill").tag("action", "merged").counter().count());
+    }
+}
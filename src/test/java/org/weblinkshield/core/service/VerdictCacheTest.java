@@ -0,0 +1,39 @@
+package org.weblinkshield.core.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.weblinkshield.data.entity.Verdict;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerdictCacheTest {
+
+    private static final String URL = "https://a.example/";
+
+    private final VerdictCache cache = new VerdictCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(10));
+
+    private static VerdictResponse verdict(Verdict.Status status) {
+        return new VerdictResponse(URL, 0, List.of(), status, Verdict.ClassLabel.unknown);
+    }
+
+    @Test
+    void staleFillDoesNotOverwriteAPublishedVerdict() {
+        long readStarted = cache.stamp();                       // lookup misses, reads the old row...
+        cache.replaceAfterCommit(URL, verdict(Verdict.Status.malicious)); // ...while analyze commits
+        cache.fill(URL, verdict(Verdict.Status.safe), readStarted);
+        assertEquals(Verdict.Status.malicious, cache.get(URL).verdict());
+    }
+
+    @Test
+    void fillAfterPublishAndPublishAfterFillBothApply() {
+        cache.fill(URL, verdict(Verdict.Status.safe), cache.stamp());
+        assertEquals(Verdict.Status.safe, cache.get(URL).verdict());
+        cache.replaceAfterCommit(URL, verdict(Verdict.Status.suspicious));
+        assertEquals(Verdict.Status.suspicious, cache.get(URL).verdict());
+        cache.fill(URL, verdict(Verdict.Status.malicious), cache.stamp());
+        assertEquals(Verdict.Status.malicious, cache.get(URL).verdict());
+    }
+}
@@ -0,0 +1,103 @@
+package org.weblinkshield.core.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.weblinkshield.core.limit.Bulkhead;
+import org.weblinkshield.data.entity.Verdict;
+import org.weblinkshield.data.repo.UrlVerdictJdbcRepo;
+import org.weblinkshield.data.repo.UrlVerdictJdbcRepo.UrlVerdict;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class VerdictWriteBehindTest {
+
+    private final UrlVerdictJdbcRepo repo = mock(UrlVerdictJdbcRepo.class);
+    private final List<List<UrlVerdict>> written = new ArrayList<>();
+
+    private VerdictWriteBehind writer(int capacity, int batchSize) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new VerdictWriteBehind(repo, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new Bulkhead("db", 1, registry), registry, capacity, batchSize,
+                Duration.ofHours(1), Duration.ofMillis(20), Duration.ofSeconds(5));
+    }
+
+    private void recordWrites() {
+        doAnswer(inv -> {
+            written.add(new ArrayList<>(inv.<Collection<UrlVerdict>>getArgument(0)));
+            return null;
+        }).when(repo).saveAll(any());
+    }
+
+    private static UrlVerdict row(String canon, Verdict.Status status) {
+        return new UrlVerdict(canon, 1L, status, Verdict.ClassLabel.unknown, 0, "[]");
+    }
+
+    @Test
+    void coalescesPerUrlAndDrainsOnStop() {
+        recordWrites();
+        VerdictWriteBehind w = writer(100, 100);
+        w.start();
+        assertTrue(w.offer(row("https://a.example/", Verdict.Status.safe)));
+        assertTrue(w.offer(row("https://b.example/", Verdict.Status.safe)));
+        assertTrue(w.offer(row("https://a.example/", Verdict.Status.malicious)));
+        assertEquals(2, w.size());
+        assertEquals(Verdict.Status.malicious, w.pending("https://a.example/").verdict());
+
+        w.stop();
+        assertEquals(0, w.size());
+        assertEquals(List.of(List.of(row("https://a.example/", Verdict.Status.malicious),
+                row("https://b.example/", Verdict.Status.safe))), written);
+        assertFalse(w.offer(row("https://c.example/", Verdict.Status.safe))); // stopped: caller writes
+    }
+
+    @Test
+    void refusesWhenFullSoTheCallerWritesItself() {
+        VerdictWriteBehind w = writer(2, 100);
+        w.start();
+        assertTrue(w.offer(row("https://a.example/", Verdict.Status.safe)));
+        assertTrue(w.offer(row("https://b.example/", Verdict.Status.safe)));
+        assertFalse(w.offer(row("https://c.example/", Verdict.Status.safe)));
+        assertTrue(w.offer(row("https://a.example/", Verdict.Status.suspicious))); // coalescing needs no room
+        w.stop();
+    }
+
+    @Test
+    void fullBatchFlushesWithoutWaitingForTheTimer() throws Exception {
+        recordWrites();
+        VerdictWriteBehind w = writer(100, 2);
+        w.start();
+        w.offer(row("https://a.example/", Verdict.Status.safe));
+        w.offer(row("https://b.example/", Verdict.Status.safe));
+        for (int i = 0; i < 100 && w.size() > 0; i++) Thread.sleep(10);
+        assertEquals(0, w.size());
+        assertEquals(1, written.size());
+        w.stop();
+    }
+
+    @Test
+    void failedFlushIsRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(inv -> {
+            if (calls.getAndIncrement() == 0) throw new IllegalStateException("db down");
+            written.add(new ArrayList<>(inv.<Collection<UrlVerdict>>getArgument(0)));
+            return null;
+        }).when(repo).saveAll(any());
+        VerdictWriteBehind w = writer(100, 100);
+        w.start();
+        w.offer(row("https://a.example/", Verdict.Status.safe));
+        w.stop();
+        assertEquals(2, calls.get());
+        assertEquals(List.of(List.of(row("https://a.example/", Verdict.Status.safe))), written);
+    }
+}
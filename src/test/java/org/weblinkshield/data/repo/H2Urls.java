@@ -0,0 +1,58 @@
+package org.weblinkshield.data.repo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.UUID;
+
+/** A fresh in-memory MySQL-mode database with the url and verdict tables, for repo tests. */
+public final class H2Urls {
+    public final DriverManagerDataSource dataSource;
+    public final JdbcTemplate jdbc;
+    public final UrlVerdictJdbcRepo repo;
+
+    public H2Urls() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID()
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("""
+                CREATE TABLE url (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    url_hash BINARY(32) NULL,
+                    url_canon TEXT NOT NULL,
+                    first_seen TIMESTAMP NOT NULL,
+                    host_id BIGINT NULL,
+                    CONSTRAINT ux_url_hash UNIQUE (url_hash))
+                """);
+        jdbc.execute("""
+                CREATE TABLE verdict (
+                    url_id BIGINT PRIMARY KEY,
+                    verdict VARCHAR(16) NOT NULL,
+                    class VARCHAR(16) NOT NULL,
+                    score DOUBLE NULL,
+                    reasons_json JSON NULL,
+                    ts TIMESTAMP NOT NULL)
+                """);
+        repo = new UrlVerdictJdbcRepo(jdbc, new NamedParameterJdbcTemplate(jdbc), new SimpleMeterRegistry());
+    }
+
+    /** Insert a url row as written before url_hash existed (or with any hash), bypassing the repo. */
+    public long insertRaw(String canon, byte[] hash) {
+        jdbc.update("INSERT INTO url (url_hash, url_canon, first_seen) VALUES (?, ?, CURRENT_TIMESTAMP)", hash, canon);
+        return jdbc.queryForObject("SELECT MAX(id) FROM url", Long.class);
+    }
+
+    public Long hostOf(long urlId) {
+        return jdbc.queryForObject("SELECT host_id FROM url WHERE id = ?", Long.class, urlId);
+    }
+
+    public String verdictOf(long urlId) {
+        return jdbc.queryForObject("SELECT verdict FROM verdict WHERE url_id = ?", String.class, urlId);
+    }
+
+    public int count(String table) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+}
@@ -0,0 +1,117 @@
+package org.weblinkshield.data.repo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.weblinkshield.data.entity.Url;
+import org.weblinkshield.data.entity.Verdict.ClassLabel;
+import org.weblinkshield.data.entity.Verdict.Status;
+import org.weblinkshield.data.repo.UrlVerdictJdbcRepo.UrlRef;
+import org.weblinkshield.data.repo.UrlVerdictJdbcRepo.UrlVerdict;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlVerdictJdbcRepoTest {
+
+    private final H2Urls db = new H2Urls();
+    private final UrlVerdictJdbcRepo repo = db.repo;
+
+    private static UrlVerdict row(String canon, Long hostId, Status verdict) {
+        return new UrlVerdict(canon, hostId, verdict, ClassLabel.unknown, 1.5, "[]");
+    }
+
+    @Test
+    void upsertUrlReturnsTheExistingIdAndKeepsTheHostOnNull() {
+        long id = repo.upsertUrl("http://a.example/", 7L);
+        assertEquals(id, repo.upsertUrl("http://a.example/", null));
+        assertEquals(7L, db.hostOf(id));
+        assertEquals(id, repo.upsertUrl("http://a.example/", 9L));
+        assertEquals(9L, db.hostOf(id));
+        assertNotEquals(id, repo.upsertUrl("http://b.example/", null));
+        assertEquals(2, db.count("url"));
+    }
+
+    @Test
+    void upsertUrlAddsAHashedRowNextToOneWrittenBeforeTheHashExisted() {
+        long id = db.insertRaw("http://old.example/", null);
+        // no hash yet, so the upsert cannot conflict with it: it inserts a hashed copy the backfill later merges
+        long hashed = repo.upsertUrl("http://old.example/", null);
+        assertNotEquals(id, hashed);
+        assertEquals(Map.of("http://old.example/", new UrlRef(hashed, null)), repo.findUrls(List.of("http://old.example/")));
+    }
+
+    @Test
+    void saveUpdatesTheVerdictInPlace() {
+        repo.save(row("http://a.example/", null, Status.safe));
+        repo.save(row("http://a.example/", 3L, Status.malicious));
+        long id = repo.findUrls(List.of("http://a.example/")).get("http://a.example/").id();
+        assertEquals("malicious", db.verdictOf(id));
+        assertEquals(3L, db.hostOf(id));
+        assertEquals(1, db.count("url"));
+        assertEquals(1, db.count("verdict"));
+    }
+
+    @Test
+    void saveAllInsertsNewUrlsRepointsHostsAndUpsertsVerdicts() {
+        repo.save(row("http://a.example/", 1L, Status.safe));
+        long a = repo.findUrls(List.of("http://a.example/")).get("http://a.example/").id();
+
+        new TransactionTemplate(new DataSourceTransactionManager(db.dataSource)).executeWithoutResult(tx ->
+                repo.saveAll(List.of(row("http://b.example/", null, Status.suspicious),
+                        row("http://a.example/", 2L, Status.malicious),
+                        row("http://c.example/", 2L, Status.safe))));
+
+        Map<String, UrlRef> urls = repo.findUrls(List.of("http://a.example/", "http://b.example/", "http://c.example/"));
+        assertEquals(3, urls.size());
+        assertEquals(a, urls.get("http://a.example/").id());
+        assertEquals(new UrlRef(a, 2L), urls.get("http://a.example/"));
+        assertNull(urls.get("http://b.example/").hostId());
+        assertEquals(2L, urls.get("http://c.example/").hostId());
+        assertEquals("malicious", db.verdictOf(a));
+        assertEquals("suspicious", db.verdictOf(urls.get("http://b.example/").id()));
+        assertEquals("safe", db.verdictOf(urls.get("http://c.example/").id()));
+        assertEquals(3, db.count("verdict"));
+    }
+
+    @Test
+    void insertUrlsLeavesAnExistingRowAlone() {
+        long id = repo.upsertUrl("http://a.example/", 5L);
+        repo.insertUrls(Map.of("http://a.example/", 6L));
+        assertEquals(1, db.count("url"));
+        assertEquals(5L, db.hostOf(id));
+    }
+
+    @Test
+    void concurrentBackfillBatchesSkipEachOthersRows() throws Exception {
+        long first = db.insertRaw("http://a.example/", null);
+        long second = db.insertRaw("http://b.example/", null);
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(db.dataSource));
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = Thread.ofVirtual().start(() -> tx.executeWithoutResult(t -> {
+            assertEquals(Map.of(first, "http://a.example/"), repo.findUnhashed(1));
+            claimed.countDown();
+            try { release.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }));
+        try {
+            claimed.await();
+            assertEquals(Map.of(second, "http://b.example/"), tx.execute(t -> repo.findUnhashed(10)));
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    void aRowWhoseCanonDoesNotMatchItsHashIsNotReturnedOrOverwritten() {
+        db.insertRaw("http://other.example/", Url.hash("http://a.example/")); // stands in for a collision
+        assertTrue(repo.findUrls(List.of("http://a.example/")).isEmpty());
+        assertThrows(IllegalStateException.class,
+                () -> repo.saveAll(List.of(row("http://a.example/", null, Status.safe))));
+        assertEquals(0, db.count("verdict"));
+    }
+}